@@ -0,0 +1,68 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.benchmarks;
+
+import dev.kosmx.playerAnim.core.data.AnimationFormat;
+import dev.kosmx.playerAnim.core.data.KeyframeAnimation;
+import dev.kosmx.playerAnim.core.util.Ease;
+import io.github.kosmx.emotes.common.opennbs.NBSFileUtils;
+
+import java.io.DataInputStream;
+import java.io.InputStream;
+
+/**
+ * Emotes of typical sizes: a short gesture, a long dance animating every part, and a short gesture with a song.
+ */
+public enum EmoteFixture {
+    SMALL,
+    LARGE,
+    SONG;
+
+    private static final String[] PARTS = {"head", "body", "rightArm", "leftArm", "rightLeg", "leftLeg"};
+
+    public KeyframeAnimation create() {
+        return switch (this) {
+            case SMALL -> build(3, 20, 2, false);
+            case LARGE -> build(PARTS.length, 1200, 1, false);
+            case SONG -> build(3, 20, 2, true);
+        };
+    }
+
+    private static KeyframeAnimation build(int parts, int length, int step, boolean song) {
+        KeyframeAnimation.AnimationBuilder builder = new KeyframeAnimation.AnimationBuilder(AnimationFormat.JSON_EMOTECRAFT);
+        builder.beginTick = 0;
+        builder.endTick = length;
+        builder.stopTick = length + 3;
+
+        for (int i = 0; i < parts; i++) {
+            KeyframeAnimation.StateCollection part = builder.getPart(PARTS[i]);
+
+            for (int tick = 0; tick <= length; tick += step) {
+                float value = (float) Math.sin((tick + i) * 0.1);
+
+                part.x.addKeyFrame(tick, value, Ease.INOUTSINE);
+                part.y.addKeyFrame(tick, value * 0.5F, Ease.INOUTSINE);
+                part.pitch.addKeyFrame(tick, value * 0.3F, Ease.LINEAR);
+                part.yaw.addKeyFrame(tick, -value * 0.3F, Ease.LINEAR);
+            }
+        }
+
+        if (song) {
+            try (InputStream stream = EmoteFixture.class.getResourceAsStream("/song.nbs")) {
+                builder.extraData.put("song", NBSFileUtils.read(new DataInputStream(stream)));
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to read song fixture", e);
+            }
+        }
+
+        return builder.build();
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.benchmarks;
+
+import io.github.kosmx.emotes.common.network.EmotePacket;
+import io.github.kosmx.emotes.common.network.objects.NetData;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Emotecraft's own serialization, what {@code EmotePacketEncoder} and {@code OnlineNetworkInstance#receiveMessage} pay per packet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EmotePacketBenchmark {
+    @Param
+    public EmoteFixture emote;
+
+    private EmotePacket.Builder builder;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() throws Exception {
+        this.builder = new EmotePacket.Builder().configureToStreamEmote(this.emote.create(), UUID.randomUUID());
+        this.builder.setSizeLimit(Integer.MAX_VALUE);
+        this.bytes = this.builder.build().write().array();
+    }
+
+    @Benchmark
+    public ByteBuffer write() throws Exception {
+        return this.builder.build().write();
+    }
+
+    @Benchmark
+    public NetData read() throws Exception {
+        return new EmotePacket.Builder().build().read(ByteBuffer.wrap(this.bytes));
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.benchmarks;
+
+import org.redlance.dima_dencep.mods.online_emotes.utils.ConnectionIdentity;
+import org.redlance.dima_dencep.mods.online_emotes.utils.EmotePacketWrapper;
+import io.github.kosmx.emotes.common.network.EmotePacket;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wrapping a serialized packet into a WebSocket frame, JSON as sent to old relays against the binary framing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FramingBenchmark {
+    @Param
+    public EmoteFixture emote;
+
+    @Param({"JSON", "BINARY"})
+    public String framing;
+
+    private final ByteBufAllocator alloc = PooledByteBufAllocator.DEFAULT;
+    private final ConnectionIdentity identity = new ConnectionIdentity("Benchmark", UUID.randomUUID(), "127.0.0.1");
+    private byte[] packet;
+
+    @Setup
+    public void setup() throws Exception {
+        EmotePacket.Builder builder = new EmotePacket.Builder().configureToStreamEmote(this.emote.create());
+        builder.setSizeLimit(Integer.MAX_VALUE);
+
+        this.packet = builder.build().write().array();
+    }
+
+    @Benchmark
+    public int wrap() {
+        EmotePacketWrapper wrapper = new EmotePacketWrapper(this.packet, this.identity);
+        WebSocketFrame frame = "JSON".equals(this.framing) ? wrapper.toWebSocketFrame() : wrapper.toBinaryFrame(this.alloc, true);
+
+        try {
+            return frame.content().readableBytes();
+        } finally {
+            frame.release();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.benchmarks;
+
+import org.redlance.dima_dencep.mods.online_emotes.network.FrameType;
+import org.redlance.dima_dencep.mods.online_emotes.utils.ConnectionIdentity;
+import org.redlance.dima_dencep.mods.online_emotes.utils.EmotePacketWrapper;
+import io.github.kosmx.emotes.common.network.EmotePacket;
+import io.github.kosmx.emotes.common.network.objects.NetData;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocket08FrameDecoder;
+import io.netty.handler.codec.http.websocketx.WebSocket08FrameEncoder;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrameAggregator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The client's WebSocket stages on an {@link EmbeddedChannel}: a masked outbound frame written to the wire,
+ * and an inbound relay frame decoded, aggregated and read in place the way {@code WebsocketHandler#channelRead0} does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PipelineBenchmark {
+    private static final int MAX_CONTENT_LENGTH = 1048576;
+
+    @Param
+    public EmoteFixture emote;
+
+    private final ConnectionIdentity identity = new ConnectionIdentity("Benchmark", UUID.randomUUID(), "127.0.0.1");
+    private EmbeddedChannel outbound;
+    private EmbeddedChannel inbound;
+    private byte[] packet;
+    private ByteBuf wire;
+
+    @Setup
+    public void setup() throws Exception {
+        EmotePacket.Builder builder = new EmotePacket.Builder().configureToStreamEmote(this.emote.create(), UUID.randomUUID());
+        builder.setSizeLimit(Integer.MAX_VALUE);
+        this.packet = builder.build().write().array();
+
+        this.outbound = new EmbeddedChannel(new WebSocket08FrameEncoder(true));
+        this.inbound = new EmbeddedChannel(
+                new WebSocket08FrameDecoder(false, false, MAX_CONTENT_LENGTH),
+                new WebSocketFrameAggregator(MAX_CONTENT_LENGTH)
+        );
+
+        // What the relay sends: an unmasked binary frame with the type byte and the raw packet
+        EmbeddedChannel relay = new EmbeddedChannel(new WebSocket08FrameEncoder(false));
+        ByteBuf content = Unpooled.buffer(1 + this.packet.length);
+        content.writeByte(FrameType.EMOTE.getId());
+        content.writeBytes(this.packet);
+        relay.writeOutbound(new BinaryWebSocketFrame(content));
+
+        this.wire = Unpooled.buffer();
+        ByteBuf part;
+        while ((part = relay.readOutbound()) != null) {
+            this.wire.writeBytes(part);
+            part.release();
+        }
+
+        relay.finishAndReleaseAll();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.outbound.finishAndReleaseAll();
+        this.inbound.finishAndReleaseAll();
+        this.wire.release();
+    }
+
+    @Benchmark
+    public int send() {
+        this.outbound.writeOutbound(new EmotePacketWrapper(this.packet, this.identity).toBinaryFrame(this.outbound.alloc(), true));
+
+        int written = 0;
+        ByteBuf buf;
+        while ((buf = this.outbound.readOutbound()) != null) {
+            written += buf.readableBytes();
+            buf.release();
+        }
+
+        return written;
+    }
+
+    @Benchmark
+    public NetData receive() throws Exception {
+        this.inbound.writeInbound(this.wire.retainedDuplicate());
+
+        WebSocketFrame frame = this.inbound.readInbound();
+        try {
+            ByteBuf buf = frame.content();
+            buf.readByte();
+
+            return new EmotePacket.Builder().build().read(buf.nioBuffer());
+        } finally {
+            frame.release();
+        }
+    }
+}
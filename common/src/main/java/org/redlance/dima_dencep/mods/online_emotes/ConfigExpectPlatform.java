@@ -10,8 +10,12 @@
 
 package org.redlance.dima_dencep.mods.online_emotes;
 
+import org.redlance.dima_dencep.mods.online_emotes.network.OutboundQueue;
+import org.redlance.dima_dencep.mods.online_emotes.utils.NettyObjectFactory;
 import dev.architectury.injectables.annotations.ExpectPlatform;
 
+import java.util.List;
+
 @SuppressWarnings("unused")
 public class ConfigExpectPlatform {
     @ExpectPlatform
@@ -40,12 +44,127 @@ public class ConfigExpectPlatform {
     }
 
     @ExpectPlatform
-    public static boolean selfPings() {
+    public static int threads() {
         throw new AssertionError();
     }
 
     @ExpectPlatform
-    public static int threads() {
+    public static boolean binaryFraming() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static int sendQueueSize() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static OutboundQueue.OverflowPolicy sendQueueOverflow() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static boolean batchFlushes() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static boolean compression() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static int compressionThreshold() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static NettyObjectFactory.AllocatorType allocator() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static long maxReconnectionDelay() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static boolean useAlpn() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static boolean persistentSession() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static long sessionIdleTimeout() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static long heartbeatInterval() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static int heartbeatMaxMissed() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static List<String> relayEndpoints() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static boolean asyncDns() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static boolean happyEyeballs() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static int receiveRateLimit() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static long duplicateWindow() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static boolean emoteCache() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static int emoteCacheSize() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static boolean bundleFrames() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static boolean interestManagement() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static int interestInterval() {
+        throw new AssertionError();
+    }
+
+    @ExpectPlatform
+    public static boolean sessionProtocol() {
         throw new AssertionError();
     }
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.mixins;
+
+import org.redlance.dima_dencep.mods.online_emotes.ConfigExpectPlatform;
+import org.redlance.dima_dencep.mods.online_emotes.OnlineEmotes;
+import net.minecraft.client.gui.components.DebugScreenOverlay;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import java.util.List;
+
+@Mixin(DebugScreenOverlay.class)
+public abstract class DebugScreenOverlayMixin {
+
+    @Inject(
+            method = "getGameInformation",
+            at = @At(
+                    value = "RETURN"
+            )
+    )
+    public void onlineEmotes$getGameInformation(CallbackInfoReturnable<List<String>> cir) {
+        if (!ConfigExpectPlatform.debug() || OnlineEmotes.proxy == null)
+            return;
+
+        List<String> lines = cir.getReturnValue();
+        lines.add("");
+        lines.add("[Online Emotes] " + OnlineEmotes.proxy.getState());
+        lines.addAll(OnlineEmotes.proxy.metrics.describe());
+    }
+}
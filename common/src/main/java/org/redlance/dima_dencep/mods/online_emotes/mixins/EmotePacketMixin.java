@@ -0,0 +1,41 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.mixins;
+
+import org.redlance.dima_dencep.mods.online_emotes.network.InboundFilter;
+import io.github.kosmx.emotes.common.network.EmotePacket;
+import io.github.kosmx.emotes.common.network.objects.NetData;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import java.nio.ByteBuffer;
+
+@Mixin(value = EmotePacket.class, remap = false)
+public abstract class EmotePacketMixin {
+
+    @Inject(
+            method = "read",
+            at = @At(
+                    value = "HEAD"
+            ),
+            cancellable = true
+    )
+    public void onlineEmotes$read(ByteBuffer buffer, CallbackInfoReturnable<NetData> cir) {
+        NetData data = InboundFilter.takeDecoded();
+
+        if (data != null) { // Already decoded on the event loop, skip the second pass
+            buffer.position(buffer.limit());
+            cir.setReturnValue(data);
+        }
+    }
+}
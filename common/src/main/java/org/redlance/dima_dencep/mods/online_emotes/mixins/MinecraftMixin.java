@@ -0,0 +1,34 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.mixins;
+
+import org.redlance.dima_dencep.mods.online_emotes.OnlineEmotes;
+import net.minecraft.client.Minecraft;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(Minecraft.class)
+public abstract class MinecraftMixin {
+
+    @Inject(
+            method = "tick",
+            at = @At(
+                    value = "TAIL"
+            )
+    )
+    public void onlineEmotes$tick(CallbackInfo ci) {
+        if (OnlineEmotes.proxy != null) {
+            OnlineEmotes.proxy.tick();
+        }
+    }
+}
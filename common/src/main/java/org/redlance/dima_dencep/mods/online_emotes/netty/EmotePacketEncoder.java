@@ -0,0 +1,99 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.netty;
+
+import org.redlance.dima_dencep.mods.online_emotes.client.FancyToast;
+import org.redlance.dima_dencep.mods.online_emotes.network.EmoteCache;
+import org.redlance.dima_dencep.mods.online_emotes.network.FrameType;
+import org.redlance.dima_dencep.mods.online_emotes.network.OnlineNetworkInstance;
+import org.redlance.dima_dencep.mods.online_emotes.network.RelayFeature;
+import org.redlance.dima_dencep.mods.online_emotes.utils.ConnectionIdentity;
+import org.redlance.dima_dencep.mods.online_emotes.utils.EmotePacketWrapper;
+import io.github.kosmx.emotes.common.network.EmotePacket;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import net.minecraft.network.chat.Component;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Serializes {@link EmotePacket}s on the event loop, so the client thread only has to build them.
+ */
+@ChannelHandler.Sharable
+public class EmotePacketEncoder extends MessageToMessageEncoder<EmotePacket> {
+    private static final Component songTooBig = Component.translatable("emotecraft.song_too_big_to_send");
+
+    private final OnlineNetworkInstance proxy;
+
+    public EmotePacketEncoder(OnlineNetworkInstance proxy) {
+        this.proxy = proxy;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, EmotePacket writer, List<Object> out) throws Exception {
+        long start = System.nanoTime();
+
+        if (writer.data.emoteData != null && this.proxy.hasFeature(RelayFeature.BINARY_FRAMING)
+                && this.proxy.hasFeature(RelayFeature.EMOTE_CACHE)) {
+            encodeReference(ctx, writer, out);
+        } else {
+            EmotePacketWrapper wrapper = new EmotePacketWrapper(writer.write().array(), this.proxy.getIdentity());
+
+            out.add(this.proxy.hasFeature(RelayFeature.BINARY_FRAMING) ?
+                    wrapper.toBinaryFrame(ctx.alloc(), !this.proxy.hasFeature(RelayFeature.SESSION)) : wrapper.toWebSocketFrame()
+            );
+        }
+
+        this.proxy.metrics.recordEncode(System.nanoTime() - start);
+
+        if (writer.data.emoteData != null && writer.data.emoteData.extraData.containsKey("song") && !writer.data.writeSong) {
+            FancyToast.sendMessage(null, songTooBig);
+        }
+    }
+
+    /**
+     * Uploads the body once per connection, every play packet after that is only a few dozen bytes.
+     */
+    private void encodeReference(ChannelHandlerContext ctx, EmotePacket writer, List<Object> out) {
+        EmoteCache.Body body = this.proxy.emoteCache.body(writer.data.emoteData);
+
+        if (this.proxy.emoteCache.markUploaded(body)) {
+            ByteBuf buf = ctx.alloc().buffer(1 + body.hash.length + body.bytes.length);
+            buf.writeByte(FrameType.EMOTE_BODY.getId());
+            buf.writeBytes(body.hash);
+            buf.writeBytes(body.bytes);
+
+            out.add(new BinaryWebSocketFrame(buf));
+        }
+
+        byte[] header = this.proxy.hasFeature(RelayFeature.SESSION) ?
+                ConnectionIdentity.NO_IDENTITY_HEADER : this.proxy.getIdentity().binaryHeader;
+        UUID player = writer.data.player;
+
+        ByteBuf buf = ctx.alloc().buffer(1 + header.length + body.hash.length + 4 + 1 + (player != null ? 16 : 0));
+        buf.writeByte(FrameType.EMOTE_REFERENCE.getId());
+        buf.writeBytes(header);
+        buf.writeBytes(body.hash);
+        buf.writeInt(writer.data.tick);
+        buf.writeBoolean(player != null);
+
+        if (player != null) {
+            buf.writeLong(player.getMostSignificantBits());
+            buf.writeLong(player.getLeastSignificantBits());
+        }
+
+        out.add(new BinaryWebSocketFrame(buf));
+    }
+}
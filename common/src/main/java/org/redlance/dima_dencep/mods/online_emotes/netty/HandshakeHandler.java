@@ -11,15 +11,23 @@
 package org.redlance.dima_dencep.mods.online_emotes.netty;
 
 import org.redlance.dima_dencep.mods.online_emotes.OnlineEmotes;
+import org.redlance.dima_dencep.mods.online_emotes.network.RelayFeature;
 import io.netty.channel.*;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.websocketx.*;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.EnumSet;
+import java.util.Set;
 
 @ChannelHandler.Sharable
 public class HandshakeHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
     private final WebSocketClientHandshaker handshaker;
     public ChannelPromise handshakeFuture;
+    public Set<RelayFeature> features = EnumSet.noneOf(RelayFeature.class);
+    @Nullable
+    public String sessionId;
 
     public HandshakeHandler(WebSocketClientHandshaker handshaker) {
         this.handshaker = handshaker;
@@ -30,6 +38,10 @@ public class HandshakeHandler extends SimpleChannelInboundHandler<FullHttpRespon
         super.handlerAdded(ctx);
 
         this.handshakeFuture = ctx.newPromise();
+
+        if (ctx.channel().isActive()) { // Added after connecting, see RelayConnector
+            this.handshaker.handshake(ctx.channel());
+        }
     }
 
     @Override
@@ -43,6 +55,8 @@ public class HandshakeHandler extends SimpleChannelInboundHandler<FullHttpRespon
     protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse msg) {
         if (!handshaker.isHandshakeComplete()) {
             handshaker.finishHandshake(ctx.channel(), msg);
+            this.features = RelayFeature.parse(msg.headers().get(RelayFeature.HEADER));
+            this.sessionId = msg.headers().get(RelayFeature.SESSION_HEADER);
             handshakeFuture.setSuccess();
         }
     }
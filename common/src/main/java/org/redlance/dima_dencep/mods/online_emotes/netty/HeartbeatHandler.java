@@ -0,0 +1,116 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.netty;
+
+import org.redlance.dima_dencep.mods.online_emotes.ConfigExpectPlatform;
+import org.redlance.dima_dencep.mods.online_emotes.OnlineEmotes;
+import org.redlance.dima_dencep.mods.online_emotes.network.ConnectionState;
+import org.redlance.dima_dencep.mods.online_emotes.network.OnlineNetworkInstance;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PongWebSocketFrame;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pings the relay only after {@link IdleStateHandler} reports that nothing was read for a while.
+ * Every ping waits for an answer for a few round trips (at least {@link #MIN_PONG_TIMEOUT}),
+ * after {@link ConfigExpectPlatform#heartbeatMaxMissed()} unanswered pings the connection is declared dead.
+ * Pongs are consumed here and never reach {@link WebsocketHandler}.
+ */
+public class HeartbeatHandler extends ChannelDuplexHandler {
+    private static final long MIN_PONG_TIMEOUT = TimeUnit.SECONDS.toNanos(2L);
+
+    private final OnlineNetworkInstance proxy;
+    private ScheduledFuture<?> pongTimeout;
+    private int missed;
+
+    public HeartbeatHandler(OnlineNetworkInstance proxy) {
+        this.proxy = proxy;
+    }
+
+    public static IdleStateHandler newIdleStateHandler() {
+        return new IdleStateHandler(ConfigExpectPlatform.heartbeatInterval(), 0L, 0L, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        this.missed = 0;
+        cancelTimeout();
+
+        if (msg instanceof PongWebSocketFrame frame) {
+            if (frame.content().readableBytes() == Long.BYTES) { // Carries the send time
+                this.proxy.metrics.rtt = System.nanoTime() - frame.content().getLong(frame.content().readerIndex());
+            }
+
+            frame.release();
+            return;
+        }
+
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent event && event.state() == IdleState.READER_IDLE) {
+            if (this.proxy.getState() != ConnectionState.OPEN) {
+                OnlineEmotes.LOGGER.warn("WebSocket handshake timed out!");
+                ctx.close();
+
+            } else if (this.pongTimeout == null) {
+                ping(ctx);
+            }
+            return;
+        }
+
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        cancelTimeout();
+
+        super.channelInactive(ctx);
+    }
+
+    private void ping(ChannelHandlerContext ctx) {
+        ctx.writeAndFlush(new PingWebSocketFrame(Unpooled.copyLong(System.nanoTime())), ctx.voidPromise());
+
+        long rtt = this.proxy.metrics.rtt;
+        long timeout = Math.max(MIN_PONG_TIMEOUT, rtt * 4L);
+
+        this.pongTimeout = ctx.executor().schedule(() -> {
+            this.pongTimeout = null;
+
+            if (++this.missed >= ConfigExpectPlatform.heartbeatMaxMissed()) {
+                OnlineEmotes.LOGGER.warn("Relay did not answer {} pings, reconnecting...", this.missed);
+
+                this.proxy.reconnectImmediately();
+                ctx.close();
+            } else {
+                ping(ctx);
+            }
+        }, timeout, TimeUnit.NANOSECONDS);
+    }
+
+    private void cancelTimeout() {
+        if (this.pongTimeout != null) {
+            this.pongTimeout.cancel(false);
+            this.pongTimeout = null;
+        }
+    }
+}
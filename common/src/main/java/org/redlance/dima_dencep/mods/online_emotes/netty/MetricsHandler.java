@@ -0,0 +1,50 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.netty;
+
+import org.redlance.dima_dencep.mods.online_emotes.network.ConnectionMetrics;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+/**
+ * Counts WebSocket frames and their payload bytes in both directions.
+ */
+@ChannelHandler.Sharable
+public class MetricsHandler extends ChannelDuplexHandler {
+    private final ConnectionMetrics metrics;
+
+    public MetricsHandler(ConnectionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof WebSocketFrame frame) {
+            this.metrics.framesIn.increment();
+            this.metrics.bytesIn.add(frame.content().readableBytes());
+        }
+
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof WebSocketFrame frame) {
+            this.metrics.framesOut.increment();
+            this.metrics.bytesOut.add(frame.content().readableBytes());
+        }
+
+        super.write(ctx, msg, promise);
+    }
+}
@@ -13,26 +13,29 @@ package org.redlance.dima_dencep.mods.online_emotes.netty;
 import org.redlance.dima_dencep.mods.online_emotes.ConfigExpectPlatform;
 import org.redlance.dima_dencep.mods.online_emotes.OnlineEmotes;
 import org.redlance.dima_dencep.mods.online_emotes.client.FancyToast;
+import org.redlance.dima_dencep.mods.online_emotes.network.FrameType;
 import org.redlance.dima_dencep.mods.online_emotes.network.OnlineNetworkInstance;
+import org.redlance.dima_dencep.mods.online_emotes.network.RelayFeature;
+import org.redlance.dima_dencep.mods.online_emotes.utils.NettyObjectFactory;
 import io.github.kosmx.emotes.PlatformTools;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.TooLongFrameException;
 import io.netty.handler.codec.http.websocketx.*;
-import io.netty.util.concurrent.ScheduledFuture;
+import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
 import net.minecraft.network.chat.Component;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.concurrent.TimeUnit;
+import java.nio.file.Path;
 
 @ChannelHandler.Sharable
 public class WebsocketHandler extends SimpleChannelInboundHandler<WebSocketFrame> {
     private static final Component disconnected = Component.translatable("online_emotes.messages.disconnected");
-    private static final Component connected = Component.translatable("online_emotes.messages.connected");
 
     private final OnlineNetworkInstance proxy;
-    private ScheduledFuture<?> future;
 
     public WebsocketHandler(OnlineNetworkInstance proxy) {
         this.proxy = proxy;
@@ -44,26 +47,37 @@ public class WebsocketHandler extends SimpleChannelInboundHandler<WebSocketFrame
 
         FancyToast.sendMessage(true, proxy.isReconnectorAlive(), false, null, disconnected);
 
-        if (future != null) {
-            future.cancel(true);
+        if (ConfigExpectPlatform.debug()) {
+            NettyObjectFactory.logAllocatorUsage(ctx.alloc());
+
+            Path path = Minecraft.getInstance().gameDirectory.toPath().resolve("logs/online_emotes-metrics.txt");
+            Util.ioPool().execute(() -> { // Off the event loop, it's blocking file IO
+                try {
+                    this.proxy.metrics.dump(path);
+                } catch (Throwable th) {
+                    OnlineEmotes.LOGGER.warn("Failed to dump metrics!", th);
+                }
+            });
         }
     }
 
     @Override
-    public void channelActive(@NotNull ChannelHandlerContext ctx) throws Exception {
-        super.channelActive(ctx);
-
-        FancyToast.sendMessage(true, false, proxy.isReconnectorAlive(), null, connected);
-
-        try {
-            if (ConfigExpectPlatform.selfPings())
-                this.future = ctx.executor().scheduleWithFixedDelay(
-                        () -> ctx.channel().writeAndFlush(new PingWebSocketFrame()),
-                        20L, 20L, TimeUnit.SECONDS
-                );
-        } catch (Throwable th) {
-            OnlineEmotes.LOGGER.warn("Failed to schedule server ping!", th);
+    public void channelWritabilityChanged(@NotNull ChannelHandlerContext ctx) throws Exception {
+        super.channelWritabilityChanged(ctx);
+
+        if (ctx.channel().isWritable()) {
+            this.proxy.flushQueue();
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        if (cause instanceof TooLongFrameException) { // Fragmented message over the limit, the rest of it is discarded
+            OnlineEmotes.LOGGER.warn("Dropped oversized message: {}", cause.getMessage());
+            return;
         }
+
+        super.exceptionCaught(ctx, cause);
     }
 
     @Override
@@ -71,12 +85,10 @@ public class WebsocketHandler extends SimpleChannelInboundHandler<WebSocketFrame
         if (msg instanceof BinaryWebSocketFrame frame) {
             ByteBuf buf = frame.content();
 
-            if (!buf.isDirect() && !buf.isReadOnly()) {
-                this.proxy.receiveMessage(buf.array());
+            if (this.proxy.hasFeature(RelayFeature.BINARY_FRAMING)) {
+                readTyped(buf, true);
             } else {
-                byte[] bytes = new byte[buf.readableBytes()];
-                buf.getBytes(buf.readerIndex(), bytes);
-                this.proxy.receiveMessage(bytes);
+                this.proxy.receiveMessage(buf);
             }
 
         } else if (msg instanceof TextWebSocketFrame frame) {
@@ -93,4 +105,32 @@ public class WebsocketHandler extends SimpleChannelInboundHandler<WebSocketFrame
             OnlineEmotes.LOGGER.error("Unsupported frame type: {}!", msg.getClass().getName());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * @param allowBundle bundles are never nested
+     */
+    private void readTyped(ByteBuf buf, boolean allowBundle) {
+        FrameType type = FrameType.byId(buf.readByte());
+
+        if (type == FrameType.EMOTE) {
+            this.proxy.receiveMessage(buf);
+        } else if (type == FrameType.EMOTE_BODY) {
+            this.proxy.receiveBody(buf);
+        } else if (type == FrameType.EMOTE_REFERENCE) {
+            this.proxy.receiveReference(buf);
+        } else if (type == FrameType.BUNDLE && allowBundle) {
+            while (buf.isReadable()) {
+                int length = buf.readInt();
+
+                if (length <= 0 || length > buf.readableBytes()) {
+                    OnlineEmotes.LOGGER.error("Malformed bundle, {} bytes left for a {} byte frame!", buf.readableBytes(), length);
+                    return;
+                }
+
+                readTyped(buf.readSlice(length), false);
+            }
+        } else {
+            OnlineEmotes.LOGGER.error("Unsupported binary frame type: {}!", type);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.network;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Counters for the relay connection, shown on the F3 screen in debug mode and dumped when the connection closes.
+ * Durations are in nanoseconds, {@code -1} means not measured yet.
+ */
+public class ConnectionMetrics {
+    public final LongAdder framesIn = new LongAdder();
+    public final LongAdder framesOut = new LongAdder();
+    public final LongAdder bytesIn = new LongAdder();
+    public final LongAdder bytesOut = new LongAdder();
+    public final LongAdder connectAttempts = new LongAdder();
+    public final LongAdder droppedRateLimited = new LongAdder();
+    public final LongAdder droppedDuplicates = new LongAdder();
+    public final LongAdder coalesced = new LongAdder();
+    public final LongAdder droppedOutOfInterest = new LongAdder();
+    public final LongAdder emoteCacheHits = new LongAdder();
+    public final LongAdder emoteCacheMisses = new LongAdder();
+
+    private final LongAdder encodeCount = new LongAdder();
+    private final LongAdder encodeNanos = new LongAdder();
+    private final LongAdder decodeCount = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+
+    public volatile long connectTime = -1L;
+    public volatile long tlsHandshakeTime = -1L;
+    public volatile long handshakeTime = -1L;
+    public volatile long rtt = -1L;
+
+    private final IntSupplier queueDepth;
+
+    public ConnectionMetrics(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public void recordEncode(long nanos) {
+        this.encodeCount.increment();
+        this.encodeNanos.add(nanos);
+    }
+
+    public void recordDecode(long nanos) {
+        this.decodeCount.increment();
+        this.decodeNanos.add(nanos);
+    }
+
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("Connect: %s, TLS: %s, WebSocket: %s, RTT: %s (attempts: %d)",
+                millis(this.connectTime), millis(this.tlsHandshakeTime), millis(this.handshakeTime), millis(this.rtt),
+                this.connectAttempts.sum()
+        ));
+        lines.add(String.format("In: %d frames / %d B, Out: %d frames / %d B, Queue: %d",
+                this.framesIn.sum(), this.bytesIn.sum(), this.framesOut.sum(), this.bytesOut.sum(),
+                this.queueDepth.getAsInt()
+        ));
+        lines.add(String.format("Encode: %s avg, Decode: %s avg",
+                average(this.encodeNanos, this.encodeCount), average(this.decodeNanos, this.decodeCount)
+        ));
+        lines.add(String.format("Dropped: %d rate limited / %d duplicates / %d out of interest, Coalesced: %d",
+                this.droppedRateLimited.sum(), this.droppedDuplicates.sum(), this.droppedOutOfInterest.sum(),
+                this.coalesced.sum()
+        ));
+        lines.add(String.format("Emote cache: %d hits / %d misses",
+                this.emoteCacheHits.sum(), this.emoteCacheMisses.sum()
+        ));
+        return lines;
+    }
+
+    public void dump(Path path) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("# " + Instant.now());
+        lines.addAll(describe());
+
+        Files.createDirectories(path.getParent());
+        Files.write(path, lines);
+    }
+
+    private static String average(LongAdder nanos, LongAdder count) {
+        long n = count.sum();
+        return n == 0 ? "-" : String.format("%.1f us", nanos.sum() / (double) n / 1000.0);
+    }
+
+    private static String millis(long nanos) {
+        return nanos < 0 ? "-" : TimeUnit.NANOSECONDS.toMillis(nanos) + " ms";
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.network;
+
+public enum ConnectionState {
+    /**
+     * TCP (and TLS) connect in progress.
+     */
+    CONNECTING,
+    /**
+     * Connected, waiting for the WebSocket upgrade response.
+     */
+    HANDSHAKING,
+    OPEN,
+    /**
+     * Close frame sent, waiting for the channel to close.
+     */
+    CLOSING,
+    CLOSED
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.network;
+
+import org.redlance.dima_dencep.mods.online_emotes.ConfigExpectPlatform;
+import org.redlance.dima_dencep.mods.online_emotes.OnlineEmotes;
+import dev.kosmx.playerAnim.core.data.KeyframeAnimation;
+import io.github.kosmx.emotes.common.network.EmotePacket;
+import io.github.kosmx.emotes.common.network.objects.NetData;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed emote bodies for {@link RelayFeature#EMOTE_CACHE}.
+ * A body is an Emotecraft packet streaming only the emote, addressed by its SHA-256.
+ * Sent bodies are remembered per emote, received ones are kept in an LRU of
+ * {@link ConfigExpectPlatform#emoteCacheSize()} entries backed by {@code online_emotes/cache} in the game directory.
+ * The disk tier is only touched on {@link Util#ioPool()} and keeps the {@link #MAX_DISK_BODIES} most recently used bodies.
+ */
+public class EmoteCache {
+    public static final int HASH_LENGTH = 32;
+    private static final int MAX_PENDING = 16;
+    private static final int MAX_PENDING_BODIES = 64;
+    private static final long PENDING_TIMEOUT = TimeUnit.SECONDS.toNanos(10L);
+    private static final int MAX_DISK_BODIES = 1024;
+
+    private final Map<KeyframeAnimation, Body> sent = new WeakHashMap<>();
+    private final Set<String> uploaded = new HashSet<>();
+    private final Map<String, KeyframeAnimation> received = new LinkedHashMap<>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, KeyframeAnimation> eldest) {
+            return size() > ConfigExpectPlatform.emoteCacheSize();
+        }
+    };
+    private final Map<String, Pending> pending = new LinkedHashMap<>();
+
+    /**
+     * @return the body of {@code emote}, serialized once per emote
+     */
+    public synchronized Body body(KeyframeAnimation emote) {
+        return this.sent.computeIfAbsent(emote, (key) -> {
+            EmotePacket.Builder builder = new EmotePacket.Builder().configureToStreamEmote(key);
+            builder.setSizeLimit(ConfigExpectPlatform.maxContentLength());
+
+            try {
+                byte[] bytes = builder.build().write().array();
+                return new Body(hash(bytes), bytes);
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to serialize emote body", e);
+            }
+        });
+    }
+
+    /**
+     * @return {@code true} the first time a body is sent on the current connection
+     */
+    public synchronized boolean markUploaded(Body body) {
+        return this.uploaded.add(body.key);
+    }
+
+    /**
+     * Only looks at the memory tier, see {@link #load(byte[])} for the disk.
+     */
+    @Nullable
+    public synchronized KeyframeAnimation get(byte[] hash) {
+        return this.received.get(ByteBufUtil.hexDump(hash));
+    }
+
+    /**
+     * Reads and verifies a body from the disk tier on {@link Util#ioPool()}.
+     *
+     * @return a future completed with {@code null} if there is no valid body on disk
+     */
+    public CompletableFuture<KeyframeAnimation> load(byte[] hash) {
+        String key = ByteBufUtil.hexDump(hash);
+
+        return CompletableFuture.supplyAsync(() -> {
+            KeyframeAnimation emote = readDisk(hash, key);
+
+            if (emote != null) {
+                synchronized (this) {
+                    this.received.put(key, emote);
+                }
+            }
+
+            return emote;
+        }, Util.ioPool());
+    }
+
+    /**
+     * Verifies and stores a received body.
+     *
+     * @return the decoded emote, or {@code null} if the body doesn't match its hash
+     */
+    @Nullable
+    public synchronized KeyframeAnimation put(byte[] hash, byte[] bytes) {
+        if (!MessageDigest.isEqual(hash, hash(bytes))) {
+            OnlineEmotes.LOGGER.warn("Emote body does not match its hash, dropped!");
+            return null;
+        }
+
+        KeyframeAnimation emote = decode(bytes);
+        if (emote == null) {
+            return null;
+        }
+
+        String key = ByteBufUtil.hexDump(hash);
+        this.received.put(key, emote);
+
+        Util.ioPool().execute(() -> {
+            try {
+                Path path = getDirectory().resolve(key + ".bin");
+                Files.createDirectories(path.getParent());
+                Files.write(path, bytes);
+
+                prune();
+            } catch (Throwable th) {
+                OnlineEmotes.LOGGER.warn("Failed to save emote body!", th);
+            }
+        });
+
+        return emote;
+    }
+
+    /**
+     * Remembers a reference waiting for its body. A body that hasn't arrived within {@link #PENDING_TIMEOUT}
+     * is given up on and requested again by the next reference, at most {@link #MAX_PENDING_BODIES} are waited for.
+     *
+     * @return {@code true} if the body has not been requested yet
+     */
+    public synchronized boolean addPending(byte[] hash, Reference reference) {
+        long now = System.nanoTime();
+        this.pending.values().removeIf((pending) -> now - pending.since > PENDING_TIMEOUT);
+
+        String key = ByteBufUtil.hexDump(hash);
+        Pending pending = this.pending.get(key);
+        boolean first = pending == null;
+
+        if (first) {
+            if (this.pending.size() >= MAX_PENDING_BODIES) {
+                Iterator<String> eldest = this.pending.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+
+            pending = new Pending(now);
+            this.pending.put(key, pending);
+        }
+
+        if (pending.references.size() < MAX_PENDING) {
+            pending.references.add(reference);
+        }
+
+        return first;
+    }
+
+    public synchronized List<Reference> takePending(byte[] hash) {
+        Pending pending = this.pending.remove(ByteBufUtil.hexDump(hash));
+        return pending != null ? pending.references : List.of();
+    }
+
+    /**
+     * Called for every new connection, the relay may not know our bodies anymore.
+     */
+    public synchronized void reset() {
+        this.uploaded.clear();
+        this.pending.clear();
+    }
+
+    @Nullable
+    private static KeyframeAnimation readDisk(byte[] hash, String key) {
+        Path path = getDirectory().resolve(key + ".bin");
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+
+        try {
+            byte[] bytes = Files.readAllBytes(path);
+
+            if (!MessageDigest.isEqual(hash, hash(bytes))) {
+                OnlineEmotes.LOGGER.warn("Cached emote body {} is corrupted, deleted!", key);
+                Files.deleteIfExists(path);
+                return null;
+            }
+
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis())); // Keeps it from being pruned
+            return decode(bytes);
+        } catch (Throwable th) {
+            OnlineEmotes.LOGGER.warn("Failed to read emote body!", th);
+            return null;
+        }
+    }
+
+    /**
+     * Deletes the least recently used bodies above {@link #MAX_DISK_BODIES}.
+     */
+    private static void prune() throws IOException {
+        List<Path> bodies;
+        try (Stream<Path> files = Files.list(getDirectory())) {
+            bodies = files.filter((path) -> path.getFileName().toString().endsWith(".bin")).collect(Collectors.toList());
+        }
+
+        if (bodies.size() <= MAX_DISK_BODIES) {
+            return;
+        }
+
+        Map<Path, Long> modified = new HashMap<>();
+        for (Path path : bodies) {
+            modified.put(path, Files.getLastModifiedTime(path).toMillis());
+        }
+
+        bodies.sort(Comparator.comparingLong(modified::get));
+
+        for (int i = 0; i < bodies.size() - MAX_DISK_BODIES; i++) {
+            Files.deleteIfExists(bodies.get(i));
+        }
+    }
+
+    @Nullable
+    private static KeyframeAnimation decode(byte[] bytes) {
+        NetData data = InboundFilter.peek(ByteBuffer.wrap(bytes));
+        return data != null ? data.emoteData : null;
+    }
+
+    private static Path getDirectory() {
+        return Minecraft.getInstance().gameDirectory.toPath().resolve("online_emotes/cache");
+    }
+
+    public static byte[] hash(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static byte[] readHash(ByteBuf buf) {
+        byte[] hash = new byte[HASH_LENGTH];
+        buf.readBytes(hash);
+        return hash;
+    }
+
+    public static class Body {
+        public final byte[] hash;
+        public final byte[] bytes;
+        private final String key;
+
+        private Body(byte[] hash, byte[] bytes) {
+            this.hash = hash;
+            this.bytes = bytes;
+            this.key = ByteBufUtil.hexDump(hash);
+        }
+    }
+
+    private static class Pending {
+        private final long since;
+        private final List<Reference> references = new ArrayList<>();
+
+        private Pending(long since) {
+            this.since = since;
+        }
+    }
+
+    public static class Reference {
+        public final UUID player;
+        public final int tick;
+
+        public Reference(UUID player, int tick) {
+            this.player = player;
+            this.tick = tick;
+        }
+    }
+}
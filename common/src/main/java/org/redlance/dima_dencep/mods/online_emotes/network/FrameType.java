@@ -0,0 +1,84 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.network;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * First byte of every binary frame once {@link RelayFeature#BINARY_FRAMING} is negotiated.
+ */
+public enum FrameType {
+    /**
+     * C2S: flags, optional UUID, name and server address, then the raw emote packet.
+     * With {@link RelayFeature#SESSION} the flags are always empty.
+     * S2C: the raw emote packet.
+     */
+    EMOTE(0x01),
+    /**
+     * {@link RelayFeature#EMOTE_CACHE}, both directions: SHA-256 of the body, then the body itself, see {@link EmoteCache}.
+     * Uploaded before the first reference to it, and sent by the relay in reply to {@link #EMOTE_FETCH}.
+     */
+    EMOTE_BODY(0x02),
+    /**
+     * {@link RelayFeature#EMOTE_CACHE}, an emote play packet without the emote.
+     * C2S: the same header as {@link #EMOTE}, SHA-256 of the body, tick, then a boolean and the optional player UUID.
+     * S2C: SHA-256 of the body, sender UUID, tick.
+     */
+    EMOTE_REFERENCE(0x03),
+    /**
+     * {@link RelayFeature#EMOTE_CACHE}, C2S: SHA-256 of a body missing from the cache.
+     */
+    EMOTE_FETCH(0x04),
+    /**
+     * {@link RelayFeature#BUNDLE}, S2C: frames of the other types, each prefixed with its length as an int.
+     * A bundle is at most 32 KiB including this type byte, well below the default {@code maxContentLength}.
+     * A frame that doesn't fit into an empty bundle is sent on its own.
+     */
+    BUNDLE(0x05),
+    /**
+     * {@link RelayFeature#INTEREST}, C2S: flags, then the added and the removed player UUIDs, each list prefixed with a short count.
+     * With {@link InterestTracker#FLAG_RESET} the added players replace the whole set.
+     */
+    INTEREST(0x06),
+    /**
+     * {@link RelayFeature#SESSION}, C2S: flags, then the UUID, name and server address that changed since the last context.
+     * Fields that are gone are marked with the clear flags instead.
+     */
+    CONTEXT(0x07);
+
+    public static final int FLAG_UUID = 1;
+    public static final int FLAG_NAME = 1 << 1;
+    public static final int FLAG_ADDRESS = 1 << 2;
+    public static final int FLAG_CLEAR_UUID = 1 << 3;
+    public static final int FLAG_CLEAR_NAME = 1 << 4;
+    public static final int FLAG_CLEAR_ADDRESS = 1 << 5;
+
+    private final byte id;
+
+    FrameType(int id) {
+        this.id = (byte) id;
+    }
+
+    public byte getId() {
+        return this.id;
+    }
+
+    @Nullable
+    public static FrameType byId(byte id) {
+        for (FrameType type : values()) {
+            if (type.id == id) {
+                return type;
+            }
+        }
+
+        return null;
+    }
+}
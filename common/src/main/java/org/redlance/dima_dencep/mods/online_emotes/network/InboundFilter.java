@@ -0,0 +1,175 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.network;
+
+import org.redlance.dima_dencep.mods.online_emotes.ConfigExpectPlatform;
+import io.github.kosmx.emotes.common.network.EmotePacket;
+import io.github.kosmx.emotes.common.network.objects.NetData;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drops inbound packets before Emotecraft plays them: a token bucket per sender
+ * ({@link ConfigExpectPlatform#receiveRateLimit()} packets per second, with a burst of the same size)
+ * and a filter for repeated play or stop packets of the same emote within {@link ConfigExpectPlatform#duplicateWindow()} ms.
+ */
+public class InboundFilter {
+    /**
+     * A sender quiet for this long has a full bucket and no duplicate to compare against, so forgetting it changes nothing.
+     */
+    private static final long SENDER_IDLE = TimeUnit.SECONDS.toNanos(30L);
+    private static final ThreadLocal<NetData> DECODED = new ThreadLocal<>();
+
+    private final Map<UUID, Sender> senders = new ConcurrentHashMap<>();
+    private final ConnectionMetrics metrics;
+    private long nextSweep = System.nanoTime() + SENDER_IDLE;
+
+    public InboundFilter(ConnectionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Reads the packet without dispatching it, used to find its sender.
+     * The result is later handed to Emotecraft with {@link #handOver(NetData)}, so the packet is only decoded once.
+     *
+     * @param buffer a copy of the packet, its position is moved
+     * @return {@code null} if the packet can't be read, Emotecraft reports it itself
+     */
+    @Nullable
+    public static NetData peek(ByteBuffer buffer) {
+        try {
+            return new EmotePacket.Builder().build().read(buffer);
+        } catch (Throwable th) {
+            return null;
+        }
+    }
+
+    /**
+     * Makes the next {@code EmotePacket#read} on this thread return {@code data} instead of decoding,
+     * see {@code EmotePacketMixin}. Pass {@code null} to reset it.
+     */
+    public static void handOver(@Nullable NetData data) {
+        DECODED.set(data);
+    }
+
+    @Nullable
+    public static NetData takeDecoded() {
+        NetData data = DECODED.get();
+        if (data != null) {
+            DECODED.remove();
+        }
+
+        return data;
+    }
+
+    /**
+     * Called on the event loop only.
+     *
+     * @return {@code false} if the packet should be dropped
+     */
+    public boolean test(@Nullable NetData data) {
+        int rateLimit = ConfigExpectPlatform.receiveRateLimit();
+        long duplicateWindow = TimeUnit.MILLISECONDS.toNanos(ConfigExpectPlatform.duplicateWindow());
+
+        if (data == null || data.player == null || (rateLimit <= 0 && duplicateWindow <= 0L)) {
+            return true;
+        }
+
+        long now = System.nanoTime();
+        if (now - this.nextSweep >= 0L) {
+            evictIdle(now, Math.max(SENDER_IDLE, duplicateWindow));
+        }
+
+        Sender sender = this.senders.computeIfAbsent(data.player, (uuid) -> new Sender(rateLimit));
+
+        synchronized (sender) {
+            sender.lastSeen = now;
+
+            // Stops are never rate limited, dropping one would leave the emote playing forever
+            if (rateLimit > 0 && data.stopEmoteID == null && !sender.tryAcquire(rateLimit, now)) {
+                this.metrics.droppedRateLimited.increment();
+                return false;
+            }
+
+            if (duplicateWindow > 0L && sender.isDuplicate(data, duplicateWindow, now)) {
+                this.metrics.droppedDuplicates.increment();
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public void clear() {
+        this.senders.clear();
+    }
+
+    private void evictIdle(long now, long idle) {
+        this.nextSweep = now + SENDER_IDLE;
+
+        this.senders.values().removeIf((sender) -> {
+            synchronized (sender) {
+                return now - sender.lastSeen > idle;
+            }
+        });
+    }
+
+    private static class Sender {
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+        private long lastSeen = this.lastRefill;
+
+        @Nullable
+        private UUID lastEmote;
+        private boolean lastStop;
+        private long lastEmoteTime;
+
+        private Sender(int rateLimit) {
+            this.tokens = rateLimit;
+        }
+
+        private boolean tryAcquire(int rateLimit, long now) {
+            this.tokens = Math.min(rateLimit, this.tokens + (now - this.lastRefill) * rateLimit / 1.0E9);
+            this.lastRefill = now;
+
+            if (this.tokens < 1.0) {
+                return false;
+            }
+
+            this.tokens -= 1.0;
+            return true;
+        }
+
+        private boolean isDuplicate(NetData data, long window, long now) {
+            boolean stop = data.stopEmoteID != null;
+            UUID emote = stop ? data.stopEmoteID : data.emoteData != null ? data.emoteData.getUuid() : null;
+
+            if (emote == null) {
+                return false;
+            }
+
+            boolean duplicate = stop == this.lastStop && Objects.equals(emote, this.lastEmote)
+                    && now - this.lastEmoteTime < window;
+
+            this.lastEmote = emote;
+            this.lastStop = stop;
+            this.lastEmoteTime = now;
+
+            return duplicate;
+        }
+    }
+}
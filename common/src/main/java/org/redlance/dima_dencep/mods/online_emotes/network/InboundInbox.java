@@ -0,0 +1,104 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.network;
+
+import io.github.kosmx.emotes.common.network.objects.NetData;
+import io.netty.buffer.ByteBuf;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+
+/**
+ * Received packets waiting for the next client tick. Filled by the event loop, drained by the client thread,
+ * where only the newest packet of every sender is played and the older ones are released unread.
+ * Packets without a sender, like configs, are always delivered in order.
+ * Every packet keeps the {@link NetData} it was decoded into on the event loop.
+ */
+public class InboundInbox {
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Retains {@code buf} until it is drained.
+     */
+    public void offer(@Nullable NetData data, ByteBuf buf) {
+        this.queue.offer(new Entry(data, buf.retain()));
+    }
+
+    /**
+     * @return the number of packets skipped because a newer one from the same sender was queued
+     */
+    public int drain(BiConsumer<ByteBuf, NetData> consumer) {
+        List<Entry> entries = new ArrayList<>();
+
+        Entry polled;
+        while ((polled = this.queue.poll()) != null) {
+            entries.add(polled);
+        }
+
+        if (entries.isEmpty()) {
+            return 0;
+        }
+
+        Set<UUID> seen = new HashSet<>();
+        boolean[] superseded = new boolean[entries.size()];
+        int skipped = 0;
+
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            NetData data = entries.get(i).data;
+            UUID sender = data != null ? data.player : null;
+
+            if (sender != null && !seen.add(sender)) {
+                superseded[i] = true;
+                skipped++;
+            }
+        }
+
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            ByteBuf buf = entry.buf;
+
+            try {
+                if (!superseded[i]) {
+                    consumer.accept(buf, entry.data);
+                }
+            } finally {
+                buf.release();
+            }
+        }
+
+        return skipped;
+    }
+
+    public void clear() {
+        Entry entry;
+        while ((entry = this.queue.poll()) != null) {
+            entry.buf.release();
+        }
+    }
+
+    private static class Entry {
+        @Nullable
+        private final NetData data;
+        private final ByteBuf buf;
+
+        private Entry(@Nullable NetData data, ByteBuf buf) {
+            this.data = data;
+            this.buf = buf;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.network;
+
+import io.github.kosmx.emotes.common.network.objects.NetData;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.client.player.AbstractClientPlayer;
+import net.minecraft.client.player.LocalPlayer;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The players within render distance, for {@link RelayFeature#INTEREST}.
+ * Updated from the client tick, read by the event loop to drop packets of players we can't see.
+ * The last emote of every player out of range is held back and replayed once they come into range,
+ * so an emote started out of sight is still shown.
+ */
+public class InterestTracker {
+    public static final int FLAG_RESET = 1;
+    private static final int MAX_HELD = 256;
+
+    private final Map<UUID, Held> held = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Held> eldest) {
+            return size() > MAX_HELD;
+        }
+    };
+
+    @Nullable
+    private volatile Set<UUID> visible;
+    private Set<UUID> announced = new HashSet<>();
+    private final AtomicBoolean reset = new AtomicBoolean(true);
+
+    /**
+     * Client thread only.
+     */
+    public void update(@Nullable ClientLevel level, @Nullable LocalPlayer self, double range) {
+        if (level == null || self == null) {
+            this.visible = null;
+            clearHeld();
+            return;
+        }
+
+        Set<UUID> players = new HashSet<>();
+        double rangeSqr = range * range;
+
+        for (AbstractClientPlayer player : level.players()) {
+            if (player != self && player.distanceToSqr(self) <= rangeSqr) {
+                players.add(player.getUUID());
+            }
+        }
+
+        this.visible = players;
+    }
+
+    /**
+     * @return {@code true} for every player until the first {@link #update}
+     */
+    public boolean contains(UUID player) {
+        Set<UUID> visible = this.visible;
+        return visible == null || visible.contains(player);
+    }
+
+    /**
+     * Remembers the emote an out of range player is playing, a stop packet forgets it. Called on the event loop.
+     */
+    public synchronized void hold(NetData data, ByteBuf buf) {
+        if (data.stopEmoteID != null) {
+            this.held.remove(data.player);
+        } else if (data.emoteData != null) {
+            this.held.put(data.player, new Held(data, ByteBufUtil.getBytes(buf), System.nanoTime()));
+        }
+    }
+
+    /**
+     * Client thread only, after {@link #update}.
+     *
+     * @return the held emotes of players that are in range now
+     */
+    public synchronized List<Held> takeVisible() {
+        Set<UUID> visible = this.visible;
+        if (visible == null || this.held.isEmpty()) {
+            return List.of();
+        }
+
+        List<Held> result = new ArrayList<>();
+
+        Iterator<Map.Entry<UUID, Held>> iterator = this.held.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<UUID, Held> entry = iterator.next();
+
+            if (visible.contains(entry.getKey())) {
+                result.add(entry.getValue());
+                iterator.remove();
+            }
+        }
+
+        return result;
+    }
+
+    public synchronized void clearHeld() {
+        this.held.clear();
+    }
+
+    /**
+     * Encodes the changes since the last announced set, everything with {@link #FLAG_RESET} after {@link #reset()}.
+     * Client thread only.
+     *
+     * @return {@code null} if nothing changed
+     */
+    @Nullable
+    public ByteBuf encodeDelta(ByteBufAllocator alloc) {
+        Set<UUID> visible = this.visible;
+        if (visible == null) {
+            return null;
+        }
+
+        boolean reset = this.reset.getAndSet(false);
+        Set<UUID> previous = reset ? Set.of() : this.announced;
+
+        Set<UUID> added = new HashSet<>(visible);
+        added.removeAll(previous);
+
+        Set<UUID> removed = new HashSet<>(previous);
+        removed.removeAll(visible);
+
+        if (!reset && added.isEmpty() && removed.isEmpty()) {
+            return null;
+        }
+
+        ByteBuf buf = alloc.buffer(1 + 1 + 2 + 2 + (added.size() + removed.size()) * 16);
+        buf.writeByte(FrameType.INTEREST.getId());
+        buf.writeByte(reset ? FLAG_RESET : 0);
+        writeUUIDs(buf, added);
+        writeUUIDs(buf, removed);
+
+        this.announced = visible;
+
+        return buf;
+    }
+
+    /**
+     * Called for every new connection, the next delta announces the full set. Safe to call from any thread.
+     */
+    public void reset() {
+        this.reset.set(true);
+    }
+
+    private static void writeUUIDs(ByteBuf buf, Collection<UUID> uuids) {
+        buf.writeShort(uuids.size());
+
+        for (UUID uuid : uuids) {
+            buf.writeLong(uuid.getMostSignificantBits());
+            buf.writeLong(uuid.getLeastSignificantBits());
+        }
+    }
+
+    public static class Held {
+        public final NetData data;
+        public final byte[] packet;
+        public final long since;
+
+        private Held(NetData data, byte[] packet, long since) {
+            this.data = data;
+            this.packet = packet;
+            this.since = since;
+        }
+    }
+}
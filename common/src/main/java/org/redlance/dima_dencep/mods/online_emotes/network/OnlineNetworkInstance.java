@@ -13,19 +13,33 @@ package org.redlance.dima_dencep.mods.online_emotes.network;
 import org.redlance.dima_dencep.mods.online_emotes.ConfigExpectPlatform;
 import org.redlance.dima_dencep.mods.online_emotes.OnlineEmotes;
 import org.redlance.dima_dencep.mods.online_emotes.client.FancyToast;
+import org.redlance.dima_dencep.mods.online_emotes.netty.EmotePacketEncoder;
 import org.redlance.dima_dencep.mods.online_emotes.netty.HandshakeHandler;
+import org.redlance.dima_dencep.mods.online_emotes.netty.HeartbeatHandler;
+import org.redlance.dima_dencep.mods.online_emotes.netty.MetricsHandler;
 import org.redlance.dima_dencep.mods.online_emotes.netty.WebsocketHandler;
-import org.redlance.dima_dencep.mods.online_emotes.utils.EmotePacketWrapper;
+import org.redlance.dima_dencep.mods.online_emotes.utils.ConnectionIdentity;
 import org.redlance.dima_dencep.mods.online_emotes.utils.NettyObjectFactory;
+import dev.kosmx.playerAnim.core.data.KeyframeAnimation;
 import io.github.kosmx.emotes.api.proxy.AbstractNetworkInstance;
 import io.github.kosmx.emotes.common.network.EmotePacket;
+import io.github.kosmx.emotes.common.network.objects.NetData;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.*;
 import io.netty.handler.codec.http.websocketx.*;
-import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.PromiseNotifier;
 import io.netty.util.concurrent.ScheduledFuture;
+import net.minecraft.client.Minecraft;
 import net.minecraft.network.chat.Component;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -33,83 +47,264 @@ import org.jetbrains.annotations.Nullable;
 import javax.net.ssl.SSLException;
 import java.io.IOException;
 import java.net.URI;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 @ChannelHandler.Sharable
 public class OnlineNetworkInstance extends AbstractNetworkInstance {
-    private static final URI URI_ADDRESS = URI.create("wss://api.redlance.org:443/websockets/online-emotes");
+    private static final Component connected = Component.translatable("online_emotes.messages.connected");
+
+    /**
+     * Seconds a connected channel may spend in the TLS and WebSocket handshakes before it is closed and retried.
+     */
+    private static final long HANDSHAKE_TIMEOUT = 15L;
 
     public final Bootstrap bootstrap = new Bootstrap();
-    private ScheduledFuture<?> reconnectingFuture;
+    public final RelayEndpoints endpoints = new RelayEndpoints();
+    private volatile URI uri;
+    private final ReconnectScheduler reconnector;
     public HandshakeHandler handshakeHandler;
     public Channel ch;
+    private volatile ConnectionIdentity identity = ConnectionIdentity.EMPTY;
+    private ConnectionIdentity announced = ConnectionIdentity.EMPTY;
+    @Nullable
+    private String sessionId;
+    private final OutboundQueue outboundQueue = new OutboundQueue();
+    public final ConnectionMetrics metrics = new ConnectionMetrics(this.outboundQueue::size);
+    private final InboundFilter inboundFilter = new InboundFilter(this.metrics);
+    private final InboundInbox inbox = new InboundInbox();
+    public final EmoteCache emoteCache = new EmoteCache();
+    private final InterestTracker interest = new InterestTracker();
+    private int ticks;
+    private final AtomicReference<ConnectionState> state = new AtomicReference<>(ConnectionState.CLOSED);
+    private ScheduledFuture<?> idleTeardown;
 
     public OnlineNetworkInstance() {
-        if (!"ws".equals(URI_ADDRESS.getScheme()) && !"wss".equals(URI_ADDRESS.getScheme())) {
-            throw new IllegalArgumentException("Unsupported protocol: " + URI_ADDRESS.getScheme());
-        }
-
         this.bootstrap.group(NettyObjectFactory.newEventLoopGroup());
+        this.reconnector = new ReconnectScheduler(this.bootstrap.config().group(), () -> {
+            if (!isActive()) {
+                OnlineEmotes.LOGGER.info("Try (re)connecting...");
+
+                this.endpoints.refresh(this.bootstrap).addListener((f) -> connectInternal());
+            }
+        });
         this.bootstrap.channel(NettyObjectFactory.getSocketChannel());
+        this.bootstrap.resolver(NettyObjectFactory.getResolverGroup());
+        this.bootstrap.option(ChannelOption.ALLOCATOR, NettyObjectFactory.newAllocator());
+        this.bootstrap.option(ChannelOption.RCVBUF_ALLOCATOR, NettyObjectFactory.newRecvAllocator());
+        this.bootstrap.option(ChannelOption.WRITE_BUFFER_WATER_MARK, NettyObjectFactory.newWaterMark());
         this.bootstrap.handler(new ChannelInitializer<SocketChannel>() {
             @Override
             public void initChannel(@NotNull SocketChannel ch) throws SSLException {
                 ChannelPipeline pipeline = ch.pipeline();
 
-                if ("wss".equals(URI_ADDRESS.getScheme())) {
-                    pipeline.addLast(SslContextBuilder.forClient().build()
-                            .newHandler(ch.alloc(), URI_ADDRESS.getHost(), URI_ADDRESS.getPort())
+                URI uri = OnlineNetworkInstance.this.uri;
+                if ("wss".equals(uri.getScheme())) {
+                    pipeline.addLast("ssl", NettyObjectFactory.getSslContext()
+                            .newHandler(ch.alloc(), uri.getHost(), RelayEndpoints.getPort(uri))
                     );
                 }
 
+                if (ConfigExpectPlatform.batchFlushes()) { // Above SslHandler, so a batch is wrapped into one TLS record
+                    pipeline.addLast("flush-consolidation", new FlushConsolidationHandler(
+                            FlushConsolidationHandler.DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES, true
+                    ));
+                }
+
                 pipeline.addLast("http-codec", new HttpClientCodec());
                 pipeline.addLast("aggregator", new HttpObjectAggregator(ConfigExpectPlatform.maxContentLength()));
+
+                if (ConfigExpectPlatform.compression()) {
+                    pipeline.addLast("ws-compression", NettyObjectFactory.newCompressionHandler());
+                }
+
                 pipeline.addLast("handshaker", OnlineNetworkInstance.this.handshakeHandler);
+                pipeline.addLast("ws-aggregator", new WebSocketFrameAggregator(ConfigExpectPlatform.maxContentLength()));
+                pipeline.addLast("metrics", new MetricsHandler(OnlineNetworkInstance.this.metrics));
+
+                pipeline.addLast("idle-state", HeartbeatHandler.newIdleStateHandler());
+                pipeline.addLast("heartbeat", new HeartbeatHandler(OnlineNetworkInstance.this));
+
                 pipeline.addLast("ws-handler", new WebsocketHandler(OnlineNetworkInstance.this));
+                pipeline.addLast("packet-encoder", new EmotePacketEncoder(OnlineNetworkInstance.this));
             }
         });
     }
 
+    /**
+     * Every attempt first lets {@link #endpoints} re-probe the relays if it is due, then connects to the fastest one.
+     */
     public void connect() {
-        stopReconnecting();
-
-        this.reconnectingFuture = bootstrap.config().group().scheduleAtFixedRate(() -> {
+        this.reconnector.start();
+    }
 
-            if (!isActive()) {
-                OnlineEmotes.LOGGER.info("Try (re)connecting...");
+    /**
+     * Called after joining a server. An open session is kept and only re-announces the new server context.
+     */
+    public synchronized void joinServer() {
+        if (this.idleTeardown != null) {
+            this.idleTeardown.cancel(false);
+            this.idleTeardown = null;
+        }
 
-                connectInternal();
+        if (isActive()) {
+            if (hasFeature(RelayFeature.SESSION)) {
+                sendContext();
+            } else {
+                sendOnlineEmotesConfig();
             }
+        } else {
+            connect();
+        }
+    }
+
+    /**
+     * Called after leaving a server. In persistent session mode the WebSocket stays open
+     * for {@link ConfigExpectPlatform#sessionIdleTimeout()} seconds in case another server is joined.
+     * A relay without {@link RelayFeature#SESSION} keeps the old server until then, it has no way to clear it.
+     */
+    public synchronized void leaveServer() {
+        this.outboundQueue.clear();
+        this.inboundFilter.clear();
+        this.inbox.clear();
+        this.interest.clearHeld();
+
+        if (!ConfigExpectPlatform.persistentSession()) {
+            disconnect();
+            return;
+        }
+
+        if (isActive() && hasFeature(RelayFeature.SESSION)) { // Clears the server, so the relay stops forwarding its emotes
+            sendContext();
+        }
+
+        if (this.idleTeardown != null) {
+            this.idleTeardown.cancel(false);
+        }
+
+        this.idleTeardown = this.bootstrap.config().group().schedule(() -> {
+            OnlineEmotes.LOGGER.info("Session idle, disconnecting...");
 
-        }, 0L, ConfigExpectPlatform.reconnectionDelay(), TimeUnit.SECONDS);
+            disconnect();
+        }, ConfigExpectPlatform.sessionIdleTimeout(), TimeUnit.SECONDS);
     }
 
     private void connectInternal() {
-        this.handshakeHandler = new HandshakeHandler(WebSocketClientHandshakerFactory.newHandshaker(URI_ADDRESS,
+        if (!this.state.compareAndSet(ConnectionState.CLOSED, ConnectionState.CONNECTING)) {
+            return; // Still connecting, open or closing, the close listener schedules the next attempt
+        }
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+
+        Set<RelayFeature> features = RelayFeature.requested();
+        if (!features.isEmpty()) {
+            headers.set(RelayFeature.HEADER, RelayFeature.join(features));
+        }
+
+        String sessionId = getSessionId();
+        if (sessionId != null && features.contains(RelayFeature.SESSION)) {
+            headers.set(RelayFeature.SESSION_HEADER, sessionId);
+        }
+
+        this.uri = this.endpoints.current();
+        this.handshakeHandler = new HandshakeHandler(WebSocketClientHandshakerFactory.newHandshaker(this.uri,
                 WebSocketVersion.V13,
                 null,
-                false,
-                EmptyHttpHeaders.INSTANCE,
-                12800000
+                ConfigExpectPlatform.compression(),
+                headers,
+                ConfigExpectPlatform.maxContentLength()
         ));
 
-        ChannelFuture channelFuture = this.bootstrap.connect(URI_ADDRESS.getHost(), URI_ADDRESS.getPort());
+        this.metrics.connectAttempts.increment();
+        long connectStart = System.nanoTime();
+
+        Future<Channel> channelFuture = RelayConnector.connect(this.bootstrap, this.uri.getHost(), RelayEndpoints.getPort(this.uri));
         channelFuture.addListener((l) -> {
             if (l.isSuccess()) {
-                disconnectNetty();
+                Channel channel = channelFuture.getNow();
+                long handshakeStart = System.nanoTime();
+                this.metrics.connectTime = handshakeStart - connectStart;
+
+                this.ch = channel;
+                this.state.set(ConnectionState.HANDSHAKING);
+
+                ScheduledFuture<?> handshakeTimeout = channel.eventLoop().schedule(() -> {
+                    if (this.ch == channel && this.state.get() == ConnectionState.HANDSHAKING) {
+                        OnlineEmotes.LOGGER.warn("Relay handshake timed out!");
 
-                this.ch = channelFuture.channel();
+                        channel.close(); // The close listener moves the state back to CLOSED
+                    }
+                }, HANDSHAKE_TIMEOUT, TimeUnit.SECONDS);
+
+                SslHandler sslHandler = channel.pipeline().get(SslHandler.class);
+                if (sslHandler != null) {
+                    sslHandler.handshakeFuture().addListener((h) -> {
+                        if (h.isSuccess()) {
+                            this.metrics.tlsHandshakeTime = System.nanoTime() - handshakeStart;
+                        }
+                    });
+                }
+
+                channel.closeFuture().addListener((c) -> {
+                    handshakeTimeout.cancel(false);
+
+                    if (this.ch == channel) {
+                        ConnectionState previous = this.state.getAndSet(ConnectionState.CLOSED);
+
+                        if (this.reconnector.isAlive()) {
+                            if (previous == ConnectionState.HANDSHAKING) { // An open connection closing is not the relay's fault
+                                this.endpoints.reportFailure();
+                            }
+
+                            this.reconnector.scheduleNext();
+                        }
+                    }
+                });
+
+                if (!this.reconnector.isAlive()) { // Disconnected while connecting
+                    disconnectNetty();
+                    return;
+                }
 
                 this.handshakeHandler.handshakeFuture.addListener((e) -> {
-                    if (e.isSuccess()) {
-                        sendOnlineEmotesConfig();
-                    } else {
+                    handshakeTimeout.cancel(false);
+
+                    if (e.isSuccess() && this.state.compareAndSet(ConnectionState.HANDSHAKING, ConnectionState.OPEN)) {
+                        this.metrics.handshakeTime = System.nanoTime() - handshakeStart;
+
+                        OnlineEmotes.LOGGER.info("Relay features: {}", this.handshakeHandler.features);
+                        this.reconnector.reset();
+                        this.endpoints.reportSuccess();
+                        this.emoteCache.reset();
+                        this.interest.reset();
+
+                        // Not in channelActive, a channel raced by RelayConnector is already active when its handlers are added
+                        FancyToast.sendMessage(true, false, isReconnectorAlive(), null, connected);
+
+                        if (hasFeature(RelayFeature.SESSION)) {
+                            boolean resumed = startSession(this.handshakeHandler.sessionId);
+                            sendContext();
+
+                            if (!resumed) {
+                                sendOnlineEmotesConfig();
+                            }
+                        } else {
+                            sendOnlineEmotesConfig();
+                        }
+
+                        flushQueue();
+                    } else if (!e.isSuccess()) {
                         OnlineEmotes.LOGGER.error("Failed to connect!", e.cause());
                     }
                 });
             } else {
                 OnlineEmotes.LOGGER.error("Failed to connect!", l.cause());
+
+                this.state.set(ConnectionState.CLOSED);
+                this.endpoints.reportFailure();
+                this.reconnector.scheduleNext();
             }
         });
     }
@@ -119,71 +314,343 @@ public class OnlineNetworkInstance extends AbstractNetworkInstance {
         return true;
     }
 
+    /**
+     * Written directly, so the relay gets the config before anything buffered in {@link #outboundQueue}.
+     */
     public void sendOnlineEmotesConfig() {
         sendC2SConfig(builder -> {
-            try {
-                sendMessage(builder, null);
-            } catch (IOException e) {
-                OnlineEmotes.LOGGER.fatal(e);
-            }
+            builder.setSizeLimit(ConfigExpectPlatform.maxContentLength());
+
+            this.ch.writeAndFlush(builder.build(), this.ch.voidPromise());
         });
     }
 
+    /**
+     * Sends the identity fields that changed since the last {@link FrameType#CONTEXT}, if any.
+     */
+    public synchronized void sendContext() {
+        ConnectionIdentity identity = this.identity;
+
+        ByteBuf context = identity.encodeContext(this.announced, this.ch.alloc());
+        if (context != null) {
+            this.ch.writeAndFlush(new BinaryWebSocketFrame(context), this.ch.voidPromise());
+        }
+
+        this.announced = identity;
+    }
+
+    /**
+     * @return {@code true} if the relay resumed our previous session and still knows the config and context
+     */
+    private synchronized boolean startSession(@Nullable String sessionId) {
+        boolean resumed = sessionId != null && sessionId.equals(this.sessionId);
+
+        this.sessionId = sessionId;
+        if (!resumed) {
+            this.announced = ConnectionIdentity.EMPTY;
+        }
+
+        return resumed;
+    }
+
+    @Nullable
+    private synchronized String getSessionId() {
+        return this.sessionId;
+    }
+
     @Override
     public boolean isActive() {
-        return this.ch != null && this.ch.isActive();
+        return this.state.get() == ConnectionState.OPEN && this.ch != null && this.ch.isActive();
+    }
+
+    public ConnectionState getState() {
+        return this.state.get();
+    }
+
+    public ConnectionIdentity getIdentity() {
+        return this.identity;
+    }
+
+    public void setIdentity(ConnectionIdentity identity) {
+        this.identity = identity;
+    }
+
+    public boolean hasFeature(RelayFeature feature) {
+        return this.handshakeHandler != null && this.handshakeHandler.features.contains(feature);
     }
 
     @Override
     public void sendMessage(EmotePacket.Builder builder, @Nullable UUID target) throws IOException {
+        sendMessageAsync(builder, target);
+    }
+
+    /**
+     * Only builds the packet on the calling thread, writing and framing it is done by {@link EmotePacketEncoder}.
+     * The packet waits in {@link #outboundQueue} while the channel is unwritable or reconnecting.
+     */
+    public Future<Void> sendMessageAsync(EmotePacket.Builder builder, @Nullable UUID target) {
         builder.setSizeLimit(ConfigExpectPlatform.maxContentLength());
 
         if (target != null) {
             builder.configureTarget(target);
         }
 
-        EmotePacket writer = builder.build();
+        Promise<Void> promise = this.bootstrap.config().group().next().newPromise();
+        promise.addListener(future -> {
+            if (!future.isSuccess() && !future.isCancelled()) {
+                OnlineEmotes.LOGGER.error("Failed to send emote packet!", future.cause());
+            }
+        });
+
+        if (!this.outboundQueue.offer(builder.build(), promise,
+                ConfigExpectPlatform.sendQueueSize(), ConfigExpectPlatform.sendQueueOverflow())) {
+            OnlineEmotes.LOGGER.warn("Send queue is full, emote packet dropped!");
+        }
+
+        flushQueue();
 
-        this.ch.writeAndFlush(new EmotePacketWrapper(writer.write().array()).toWebSocketFrame(), this.ch.voidPromise());
+        return promise;
+    }
 
-        if (writer.data.emoteData != null && writer.data.emoteData.extraData.containsKey("song") && !writer.data.writeSong) {
-            FancyToast.sendMessage(null, Component.translatable("emotecraft.song_too_big_to_send"));
+    /**
+     * Drains {@link #outboundQueue} on the event loop for as long as the channel stays writable.
+     * Called again by {@link WebsocketHandler} once the channel becomes writable and after each handshake.
+     */
+    public void flushQueue() {
+        Channel channel = this.ch;
+        if (channel == null || !isActive()) {
+            return;
+        }
+
+        if (!channel.eventLoop().inEventLoop()) {
+            channel.eventLoop().execute(this::flushQueue);
+            return;
+        }
+
+        boolean written = false;
+
+        while (channel.isWritable()) {
+            OutboundQueue.Entry entry = this.outboundQueue.poll();
+            if (entry == null) {
+                break;
+            }
+
+            channel.write(entry.packet).addListener(new PromiseNotifier<Void, ChannelFuture>(entry.promise));
+            written = true;
+        }
+
+        if (written) {
+            channel.flush();
         }
     }
 
-    public void disconnectNetty() {
-        if (isActive()) {
-            this.ch.writeAndFlush(new CloseWebSocketFrame(), this.ch.voidPromise());
+    /**
+     * Called on the event loop. Packets rejected by {@link #inboundFilter} are dropped here,
+     * the rest wait in {@link #inbox} until the next {@link #tick()}.
+     * The buffer is only borrowed: the caller keeps ownership and releases it after this returns.
+     */
+    public void receiveMessage(ByteBuf buf) {
+        receiveMessage(buf, InboundFilter.peek(buf.nioBuffer()));
+    }
+
+    /**
+     * @param data {@code buf} decoded already, it is passed on to Emotecraft instead of decoding the packet again
+     */
+    private void receiveMessage(ByteBuf buf, @Nullable NetData data) {
+        if (data != null && data.player != null && !isInterested(data.player)) {
+            this.metrics.droppedOutOfInterest.increment();
+            this.interest.hold(data, buf);
+            return;
+        }
+
+        if (this.inboundFilter.test(data)) {
+            this.inbox.offer(data, buf);
+        }
+    }
+
+    /**
+     * Plays a {@link FrameType#EMOTE_REFERENCE} with the cached emote. On a miss the disk tier is checked off the event loop,
+     * then the relay is asked for the body.
+     */
+    public void receiveReference(ByteBuf buf) {
+        byte[] hash = EmoteCache.readHash(buf);
+        EmoteCache.Reference reference = new EmoteCache.Reference(new UUID(buf.readLong(), buf.readLong()), buf.readInt());
+
+        KeyframeAnimation emote = this.emoteCache.get(hash);
+        if (emote != null) {
+            this.metrics.emoteCacheHits.increment();
+
+            receiveReference(emote, reference);
+            return;
+        }
+
+        if (!this.emoteCache.addPending(hash, reference)) {
+            return; // Already being loaded or fetched
+        }
+
+        Channel channel = this.ch;
+        this.emoteCache.load(hash).whenComplete((loaded, th) -> channel.eventLoop().execute(() -> {
+            if (loaded != null) {
+                this.metrics.emoteCacheHits.increment();
+
+                for (EmoteCache.Reference pending : this.emoteCache.takePending(hash)) {
+                    receiveReference(loaded, pending);
+                }
+                return;
+            }
+
+            this.metrics.emoteCacheMisses.increment();
+
+            ByteBuf fetch = channel.alloc().buffer(1 + hash.length);
+            fetch.writeByte(FrameType.EMOTE_FETCH.getId());
+            fetch.writeBytes(hash);
+
+            channel.writeAndFlush(new BinaryWebSocketFrame(fetch), channel.voidPromise());
+        }));
+    }
+
+    /**
+     * Stores a {@link FrameType#EMOTE_BODY} and plays the references that were waiting for it.
+     */
+    public void receiveBody(ByteBuf buf) {
+        byte[] hash = EmoteCache.readHash(buf);
+
+        KeyframeAnimation emote = this.emoteCache.put(hash, ByteBufUtil.getBytes(buf));
+        if (emote == null) {
+            return;
+        }
+
+        for (EmoteCache.Reference reference : this.emoteCache.takePending(hash)) {
+            receiveReference(emote, reference);
+        }
+    }
+
+    private void receiveReference(KeyframeAnimation emote, EmoteCache.Reference reference) {
+        EmotePacket.Builder builder = new EmotePacket.Builder().configureToStreamEmote(emote, reference.player);
+        builder.configureEmoteTick(reference.tick);
+
+        try {
+            EmotePacket packet = builder.build();
+            ByteBuf buf = Unpooled.wrappedBuffer(packet.write());
 
             try {
-                this.ch.close().awaitUninterruptibly();
-            } catch (Throwable th) {
-                OnlineEmotes.LOGGER.error("Failed to disconnect WebSocket:", th);
+                receiveMessage(buf, packet.data); // Built from known fields, no need to decode it
+            } finally {
+                buf.release();
             }
+        } catch (Throwable th) {
+            OnlineEmotes.LOGGER.error("Failed to rebuild emote packet!", th);
         }
     }
 
+    /**
+     * Called at the end of every client tick, plays the packets received since the previous one.
+     */
+    public void tick() {
+        int skipped = this.inbox.drain(this::dispatch);
+
+        if (skipped > 0) {
+            this.metrics.coalesced.add(skipped);
+        }
+
+        if (ConfigExpectPlatform.interestManagement() && ++this.ticks % ConfigExpectPlatform.interestInterval() == 0) {
+            updateInterest();
+        }
+    }
+
+    /**
+     * Recomputes the players in render distance and announces the changes to relays with {@link RelayFeature#INTEREST}.
+     * Emotes held back while a player was out of range are played now, advanced by the time they waited.
+     */
+    private void updateInterest() {
+        Minecraft minecraft = Minecraft.getInstance();
+        this.interest.update(minecraft.level, minecraft.player, minecraft.options.getEffectiveRenderDistance() * 16.0);
+
+        for (InterestTracker.Held held : this.interest.takeVisible()) {
+            held.data.tick += (int) (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - held.since) / 50L);
+
+            ByteBuf buf = Unpooled.wrappedBuffer(held.packet);
+            this.inbox.offer(held.data, buf);
+            buf.release();
+        }
+
+        Channel channel = this.ch;
+        if (!isActive() || !hasFeature(RelayFeature.INTEREST)) {
+            return;
+        }
+
+        ByteBuf delta = this.interest.encodeDelta(channel.alloc());
+        if (delta != null) {
+            channel.writeAndFlush(new BinaryWebSocketFrame(delta), channel.voidPromise());
+        }
+    }
+
+    private boolean isInterested(UUID player) {
+        return !ConfigExpectPlatform.interestManagement() || this.interest.contains(player);
+    }
+
+    /**
+     * Hands the packet to Emotecraft, which reuses {@code data} if it is there
+     * and otherwise decodes the readable bytes of {@code buf} in place, without copying them into a {@code byte[]}.
+     */
+    private void dispatch(ByteBuf buf, @Nullable NetData data) {
+        long start = System.nanoTime();
+
+        InboundFilter.handOver(data);
+        try {
+            receiveMessage(buf.nioBuffer(), null);
+        } catch (Throwable th) {
+            OnlineEmotes.LOGGER.error("Failed to receive emote packet!", th);
+        } finally {
+            InboundFilter.handOver(null);
+        }
+
+        this.metrics.recordDecode(System.nanoTime() - start);
+    }
+
+    /**
+     * Sends a close frame and closes the channel without waiting for it.
+     *
+     * @return the close future of the current channel
+     */
+    public Future<Void> disconnectNetty() {
+        Channel channel = this.ch;
+        if (channel == null || !channel.isActive()) {
+            return ImmediateEventExecutor.INSTANCE.newSucceededFuture(null);
+        }
+
+        if (this.state.getAndSet(ConnectionState.CLOSING) == ConnectionState.OPEN) {
+            channel.writeAndFlush(new CloseWebSocketFrame()).addListener(ChannelFutureListener.CLOSE);
+        } else {
+            channel.close();
+        }
+
+        return channel.closeFuture();
+    }
+
     @Override
     public void disconnect() {
         stopReconnecting();
+        this.outboundQueue.clear();
+        this.inboundFilter.clear();
+        this.inbox.clear();
+        this.interest.clearHeld();
         disconnectNetty();
         super.disconnect();
     }
 
-    public void stopReconnecting() {
-        try {
-            if (this.reconnectingFuture != null && !this.reconnectingFuture.isCancelled()) {
-                OnlineEmotes.LOGGER.warn("What happened to the reconnector?");
+    /**
+     * The next reconnect after the current channel closes happens without delay.
+     */
+    public void reconnectImmediately() {
+        this.reconnector.expedite();
+    }
 
-                this.reconnectingFuture.cancel(true);
-                this.reconnectingFuture = null;
-            }
-        } catch (Throwable th) {
-            OnlineEmotes.LOGGER.error("Failed to stop reconnector:", th);
-        }
+    public void stopReconnecting() {
+        this.reconnector.stop();
     }
 
     public boolean isReconnectorAlive() {
-        return this.reconnectingFuture != null;
+        return this.reconnector.isAlive();
     }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.network;
+
+import io.github.kosmx.emotes.common.network.EmotePacket;
+import io.netty.util.concurrent.Promise;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Packets waiting for the channel to become writable, or for the next successful handshake.
+ * A newer play or stop packet for the same emote and target supersedes the queued one:
+ * the old entry is removed and the new one goes to the tail, so the relay sees the user's actions in order.
+ */
+public class OutboundQueue {
+    private final Deque<Entry> queue = new ArrayDeque<>();
+
+    /**
+     * @return {@code false} if the packet was dropped because the queue is full
+     */
+    public synchronized boolean offer(EmotePacket packet, Promise<Void> promise, int capacity, OverflowPolicy policy) {
+        UUID emoteId = getEmoteId(packet);
+
+        if (emoteId != null) {
+            Iterator<Entry> iterator = this.queue.iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+
+                if (emoteId.equals(entry.emoteId) && Objects.equals(packet.data.player, entry.packet.data.player)) {
+                    entry.promise.cancel(false);
+                    iterator.remove();
+                    break;
+                }
+            }
+        }
+
+        if (this.queue.size() >= capacity) {
+            if (policy == OverflowPolicy.DROP_NEWEST || this.queue.isEmpty()) {
+                promise.cancel(false);
+                return false;
+            }
+
+            this.queue.pollFirst().promise.cancel(false);
+        }
+
+        this.queue.addLast(new Entry(packet, promise, emoteId));
+        return true;
+    }
+
+    @Nullable
+    public synchronized Entry poll() {
+        return this.queue.pollFirst();
+    }
+
+    public synchronized int size() {
+        return this.queue.size();
+    }
+
+    public synchronized void clear() {
+        Iterator<Entry> iterator = this.queue.iterator();
+        while (iterator.hasNext()) {
+            iterator.next().promise.cancel(false);
+            iterator.remove();
+        }
+    }
+
+    @Nullable
+    private static UUID getEmoteId(EmotePacket packet) {
+        if (packet.data.emoteData != null) {
+            return packet.data.emoteData.getUuid();
+        }
+
+        return packet.data.stopEmoteID;
+    }
+
+    public static class Entry {
+        public final EmotePacket packet;
+        public final Promise<Void> promise;
+        @Nullable
+        private final UUID emoteId;
+
+        private Entry(EmotePacket packet, Promise<Void> promise, @Nullable UUID emoteId) {
+            this.packet = packet;
+            this.promise = promise;
+            this.emoteId = emoteId;
+        }
+    }
+
+    public enum OverflowPolicy {
+        DROP_OLDEST,
+        DROP_NEWEST
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.network;
+
+import org.redlance.dima_dencep.mods.online_emotes.ConfigExpectPlatform;
+import org.redlance.dima_dencep.mods.online_emotes.OnlineEmotes;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exponential backoff with full jitter, so clients don't reconnect in lockstep after a relay restart.
+ * The n-th retry waits a random time between zero and {@code min(maxReconnectionDelay, reconnectionDelay * 2^n)}.
+ */
+public class ReconnectScheduler {
+    /**
+     * Floor for the base delay, a zero base would otherwise retry in a tight loop.
+     */
+    private static final long MIN_BASE_DELAY = 1000L;
+
+    private final EventExecutorGroup group;
+    private final Runnable task;
+
+    private ScheduledFuture<?> future;
+    private volatile boolean alive;
+    private int attempts;
+    private boolean expedited;
+
+    public ReconnectScheduler(EventExecutorGroup group, Runnable task) {
+        this.group = group;
+        this.task = task;
+    }
+
+    /**
+     * Starts over with an immediate attempt.
+     */
+    public synchronized void start() {
+        this.alive = true;
+        this.attempts = 0;
+
+        schedule(0L);
+    }
+
+    public synchronized void scheduleNext() {
+        if (!this.alive) {
+            return;
+        }
+
+        if (this.expedited) {
+            this.expedited = false;
+
+            schedule(0L);
+            return;
+        }
+
+        long base = Math.max(MIN_BASE_DELAY, TimeUnit.SECONDS.toMillis(ConfigExpectPlatform.reconnectionDelay()));
+        long cap = Math.max(base, TimeUnit.SECONDS.toMillis(ConfigExpectPlatform.maxReconnectionDelay()));
+        long ceiling = Math.min(cap, base << Math.min(this.attempts++, 20));
+
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+
+        OnlineEmotes.LOGGER.info("Reconnecting in {} ms (attempt {})", delay, this.attempts);
+
+        schedule(delay);
+    }
+
+    /**
+     * Makes the next {@link #scheduleNext()} retry right away, used when a dead connection is detected.
+     */
+    public synchronized void expedite() {
+        this.expedited = true;
+    }
+
+    /**
+     * Called after a successful handshake.
+     */
+    public synchronized void reset() {
+        this.attempts = 0;
+    }
+
+    public synchronized void stop() {
+        this.alive = false;
+
+        if (this.future != null) {
+            this.future.cancel(false);
+            this.future = null;
+        }
+    }
+
+    public boolean isAlive() {
+        return this.alive;
+    }
+
+    private void schedule(long delay) {
+        if (this.future != null) {
+            this.future.cancel(false);
+        }
+
+        this.future = this.group.schedule(this.task, delay, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.network;
+
+import org.redlance.dima_dencep.mods.online_emotes.ConfigExpectPlatform;
+import org.redlance.dima_dencep.mods.online_emotes.utils.NettyObjectFactory;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoop;
+import io.netty.resolver.AddressResolver;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.net.Inet6Address;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Happy eyeballs (RFC 8305): all resolved addresses are tried with IPv6 and IPv4 interleaved,
+ * a new attempt starts every {@link #ATTEMPT_DELAY} ms without waiting for the previous one, or right away when one fails.
+ * The first connected channel wins.
+ * Only the winner gets the real pipeline, the others are closed.
+ */
+public final class RelayConnector {
+    private static final long ATTEMPT_DELAY = 250L;
+
+    private RelayConnector() {
+    }
+
+    /**
+     * Falls back to a plain {@link Bootstrap#connect(String, int)} when {@link ConfigExpectPlatform#happyEyeballs()} is off.
+     */
+    public static Future<Channel> connect(Bootstrap bootstrap, String host, int port) {
+        EventLoop loop = bootstrap.config().group().next();
+        Promise<Channel> promise = loop.newPromise();
+
+        if (!ConfigExpectPlatform.happyEyeballs()) {
+            ChannelFuture future = bootstrap.connect(host, port);
+            future.addListener((f) -> {
+                if (f.isSuccess()) {
+                    promise.trySuccess(future.channel());
+                } else {
+                    promise.tryFailure(f.cause());
+                }
+            });
+            return promise;
+        }
+
+        AddressResolver<InetSocketAddress> resolver = NettyObjectFactory.getResolverGroup().getResolver(loop);
+        resolver.resolveAll(InetSocketAddress.createUnresolved(host, port)).addListener((resolved) -> {
+            if (!resolved.isSuccess()) {
+                promise.tryFailure(resolved.cause());
+                return;
+            }
+
+            @SuppressWarnings("unchecked")
+            List<InetSocketAddress> addresses = interleave((List<InetSocketAddress>) resolved.getNow());
+
+            if (addresses.isEmpty()) {
+                promise.tryFailure(new IllegalStateException("No addresses for " + host));
+                return;
+            }
+
+            new Race(bootstrap, addresses, loop, promise).startNext();
+        });
+
+        return promise;
+    }
+
+    /**
+     * State of one happy eyeballs race, only touched on {@link #loop}.
+     */
+    private static final class Race {
+        private final Bootstrap bootstrap;
+        private final ChannelHandler initializer;
+        private final List<InetSocketAddress> addresses;
+        private final EventLoop loop;
+        private final Promise<Channel> promise;
+
+        private final List<ChannelFuture> attempts = new ArrayList<>();
+        private ScheduledFuture<?> timer;
+        private int next;
+        private int failed;
+        private boolean won;
+
+        private Race(Bootstrap bootstrap, List<InetSocketAddress> addresses, EventLoop loop, Promise<Channel> promise) {
+            this.bootstrap = bootstrap;
+            this.initializer = bootstrap.config().handler();
+            this.addresses = addresses;
+            this.loop = loop;
+            this.promise = promise;
+        }
+
+        /**
+         * Starts the next attempt, then schedules the one after it unless this one fails first.
+         */
+        private void startNext() {
+            if (this.timer != null) {
+                this.timer.cancel(false);
+                this.timer = null;
+            }
+
+            if (this.won || this.promise.isDone() || this.next >= this.addresses.size()) {
+                return;
+            }
+
+            // A fresh no-op handler per attempt, ChannelInboundHandlerAdapter is not sharable
+            ChannelFuture attempt = this.bootstrap.clone()
+                    .handler(new ChannelInboundHandlerAdapter())
+                    .connect(this.addresses.get(this.next++));
+
+            this.attempts.add(attempt);
+            attempt.addListener((f) -> this.loop.execute(() -> finished(attempt)));
+
+            if (this.next < this.addresses.size()) {
+                this.timer = this.loop.schedule(this::startNext, ATTEMPT_DELAY, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void finished(ChannelFuture attempt) {
+            if (!attempt.isSuccess()) {
+                if (++this.failed == this.addresses.size()) {
+                    this.promise.tryFailure(attempt.cause());
+                } else {
+                    startNext(); // Don't wait for the timer
+                }
+                return;
+            }
+
+            if (this.won) {
+                attempt.channel().close();
+                return;
+            }
+
+            this.won = true;
+            if (this.timer != null) {
+                this.timer.cancel(false);
+                this.timer = null;
+            }
+
+            attempt.channel().pipeline().addLast(this.initializer);
+
+            if (!this.promise.trySuccess(attempt.channel())) {
+                attempt.channel().close();
+            }
+
+            for (ChannelFuture other : this.attempts) {
+                if (other != attempt && !other.cancel(false)) {
+                    other.channel().close();
+                }
+            }
+        }
+    }
+
+    private static List<InetSocketAddress> interleave(List<InetSocketAddress> addresses) {
+        List<InetSocketAddress> v6 = new ArrayList<>();
+        List<InetSocketAddress> v4 = new ArrayList<>();
+
+        for (InetSocketAddress address : addresses) {
+            (address.getAddress() instanceof Inet6Address ? v6 : v4).add(address);
+        }
+
+        List<InetSocketAddress> result = new ArrayList<>(addresses.size());
+        for (int i = 0; i < Math.max(v6.size(), v4.size()); i++) {
+            if (i < v6.size()) result.add(v6.get(i));
+            if (i < v4.size()) result.add(v4.get(i));
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.network;
+
+import org.redlance.dima_dencep.mods.online_emotes.ConfigExpectPlatform;
+import org.redlance.dima_dencep.mods.online_emotes.OnlineEmotes;
+import org.redlance.dima_dencep.mods.online_emotes.netty.HandshakeHandler;
+import org.redlance.dima_dencep.mods.online_emotes.utils.NettyObjectFactory;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketClientHandshakerFactory;
+import io.netty.handler.codec.http.websocketx.WebSocketVersion;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import javax.net.ssl.SSLException;
+import java.net.URI;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Relays from {@link ConfigExpectPlatform#relayEndpoints()}, ordered by how long the TLS and WebSocket handshakes take.
+ * The list is probed before the first connect and again every {@link #REPROBE_INTERVAL} minutes, which also brings
+ * the client back to the fastest relay. The client only moves on to the next relay after {@link #MAX_FAILURES}
+ * connection attempts in a row failed.
+ */
+public class RelayEndpoints {
+    public static final String DEFAULT = "wss://api.redlance.org:443/websockets/online-emotes";
+
+    private static final long PROBE_TIMEOUT = 5L;
+    private static final long REPROBE_INTERVAL = 10L;
+    private static final int MAX_FAILURES = 3;
+
+    private List<URI> endpoints = List.of(URI.create(DEFAULT));
+    private int index;
+    private int failures;
+    private long probedAt;
+    private boolean probed;
+    private Future<Void> probing;
+
+    public synchronized URI current() {
+        return this.endpoints.get(this.index);
+    }
+
+    /**
+     * Called when a connection attempt fails or the handshake doesn't complete.
+     */
+    public synchronized void reportFailure() {
+        if (++this.failures < MAX_FAILURES || this.endpoints.size() < 2) {
+            return;
+        }
+
+        this.failures = 0;
+        this.index = (this.index + 1) % this.endpoints.size();
+
+        OnlineEmotes.LOGGER.info("Failing over to {}", current());
+    }
+
+    public synchronized void reportSuccess() {
+        this.failures = 0;
+    }
+
+    /**
+     * Probes the relays if they were never probed or the last probe is too old.
+     * Concurrent callers share the probe that is already running.
+     */
+    public synchronized Future<Void> refresh(Bootstrap bootstrap) {
+        if (this.probing != null) {
+            return this.probing;
+        }
+
+        if (this.probed && System.nanoTime() - this.probedAt < TimeUnit.MINUTES.toNanos(REPROBE_INTERVAL)) {
+            return ImmediateEventExecutor.INSTANCE.newSucceededFuture(null);
+        }
+
+        Future<Void> probing = probe(bootstrap);
+        this.probing = probing;
+        probing.addListener((f) -> {
+            synchronized (this) {
+                this.probing = null;
+            }
+        });
+
+        return probing;
+    }
+
+    /**
+     * Handshakes with every configured relay in parallel and keeps them sorted by the handshake latency.
+     * Unreachable relays go last.
+     */
+    private Future<Void> probe(Bootstrap bootstrap) {
+        List<URI> candidates = parse(ConfigExpectPlatform.relayEndpoints());
+        Promise<Void> promise = bootstrap.config().group().next().newPromise();
+
+        if (candidates.size() == 1) { // Nothing to choose from
+            update(candidates);
+            return promise.setSuccess(null);
+        }
+
+        Map<URI, Long> latencies = new HashMap<>();
+        AtomicInteger remaining = new AtomicInteger(candidates.size());
+
+        for (URI uri : candidates) {
+            measure(bootstrap, uri).addListener((f) -> {
+                synchronized (latencies) {
+                    latencies.put(uri, f.isSuccess() ? (Long) f.getNow() : Long.MAX_VALUE);
+                }
+
+                if (remaining.decrementAndGet() == 0) {
+                    List<URI> sorted = new ArrayList<>(candidates);
+                    synchronized (latencies) {
+                        sorted.sort(Comparator.comparingLong(latencies::get));
+                    }
+
+                    update(sorted);
+
+                    OnlineEmotes.LOGGER.info("Relay endpoints by latency: {}", sorted);
+                    promise.trySuccess(null);
+                }
+            });
+        }
+
+        return promise;
+    }
+
+    private synchronized void update(List<URI> endpoints) {
+        this.endpoints = endpoints;
+        this.index = 0;
+        this.failures = 0;
+        this.probed = true;
+        this.probedAt = System.nanoTime();
+    }
+
+    /**
+     * @return nanoseconds from the start of the TCP connect to the completed WebSocket handshake
+     */
+    private static Future<Long> measure(Bootstrap bootstrap, URI uri) {
+        EventLoop loop = bootstrap.config().group().next();
+        Promise<Long> promise = loop.newPromise();
+
+        HandshakeHandler handshakeHandler = new HandshakeHandler(WebSocketClientHandshakerFactory.newHandshaker(uri,
+                WebSocketVersion.V13, null, false, new DefaultHttpHeaders(), ConfigExpectPlatform.maxContentLength()
+        ));
+
+        long start = System.nanoTime();
+
+        ChannelFuture connect = bootstrap.clone().handler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel ch) throws SSLException {
+                if ("wss".equals(uri.getScheme())) {
+                    ch.pipeline().addLast("ssl", NettyObjectFactory.getSslContext()
+                            .newHandler(ch.alloc(), uri.getHost(), getPort(uri))
+                    );
+                }
+
+                ch.pipeline().addLast("http-codec", new HttpClientCodec());
+                ch.pipeline().addLast("aggregator", new HttpObjectAggregator(ConfigExpectPlatform.maxContentLength()));
+                ch.pipeline().addLast("handshaker", handshakeHandler);
+            }
+        }).connect(uri.getHost(), getPort(uri));
+
+        Channel channel = connect.channel();
+
+        ScheduledFuture<?> timeout = loop.schedule(() -> {
+            if (promise.tryFailure(new TimeoutException("Probing " + uri + " timed out"))) {
+                channel.close();
+            }
+        }, PROBE_TIMEOUT, TimeUnit.SECONDS);
+        promise.addListener((f) -> timeout.cancel(false));
+
+        connect.addListener((f) -> {
+            if (!f.isSuccess()) {
+                promise.tryFailure(f.cause());
+                return;
+            }
+
+            channel.closeFuture().addListener((c) -> promise.tryFailure(new ClosedChannelException()));
+
+            handshakeHandler.handshakeFuture.addListener((h) -> {
+                if (h.isSuccess() && promise.trySuccess(System.nanoTime() - start)) {
+                    channel.writeAndFlush(new CloseWebSocketFrame()).addListener(ChannelFutureListener.CLOSE);
+                } else {
+                    channel.close();
+                }
+            });
+        });
+
+        return promise;
+    }
+
+    public static int getPort(URI uri) {
+        if (uri.getPort() != -1) {
+            return uri.getPort();
+        }
+
+        return "wss".equals(uri.getScheme()) ? 443 : 80;
+    }
+
+    private static List<URI> parse(List<String> values) {
+        List<URI> uris = new ArrayList<>();
+
+        for (String value : values) {
+            try {
+                URI uri = URI.create(value.trim());
+
+                if (!"ws".equals(uri.getScheme()) && !"wss".equals(uri.getScheme())) {
+                    throw new IllegalArgumentException("Unsupported protocol: " + uri.getScheme());
+                }
+
+                uris.add(uri);
+            } catch (IllegalArgumentException e) {
+                OnlineEmotes.LOGGER.error("Invalid relay endpoint {}!", value, e);
+            }
+        }
+
+        if (uris.isEmpty()) {
+            uris.add(URI.create(DEFAULT));
+        }
+
+        return uris;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.network;
+
+import org.redlance.dima_dencep.mods.online_emotes.ConfigExpectPlatform;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Optional protocol extensions, offered by the client in the upgrade request
+ * and confirmed by the relay in the upgrade response. Older relays simply ignore the header,
+ * so everything not listed in the response falls back to the original protocol.
+ */
+public enum RelayFeature {
+    /**
+     * Typed {@link io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame}s in both directions
+     * instead of JSON {@link io.netty.handler.codec.http.websocketx.TextWebSocketFrame}s, see {@link FrameType}.
+     */
+    BINARY_FRAMING("binary"),
+    /**
+     * Play packets reference emote bodies by hash instead of carrying them, see {@link EmoteCache}.
+     * Requires {@link #BINARY_FRAMING}.
+     */
+    EMOTE_CACHE("emote-cache"),
+    /**
+     * The relay may batch the frames it fans out into one {@link FrameType#BUNDLE}. Requires {@link #BINARY_FRAMING}.
+     */
+    BUNDLE("bundle"),
+    /**
+     * The client announces which players are in render distance and the relay only forwards their packets,
+     * see {@link InterestTracker}. Requires {@link #BINARY_FRAMING}.
+     */
+    INTEREST("interest"),
+    /**
+     * The sender identity is announced once per session with {@link FrameType#CONTEXT} and only changes are sent after that,
+     * emote frames no longer repeat it. Reconnects resume the session by sending its id in {@link #SESSION_HEADER}.
+     * Requires {@link #BINARY_FRAMING}.
+     */
+    SESSION("session");
+
+    public static final String HEADER = "X-Online-Emotes-Features";
+    public static final String SESSION_HEADER = "X-Online-Emotes-Session";
+
+    private final String id;
+
+    RelayFeature(String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public boolean isEnabled() {
+        return switch (this) {
+            case BINARY_FRAMING -> ConfigExpectPlatform.binaryFraming();
+            case EMOTE_CACHE -> ConfigExpectPlatform.binaryFraming() && ConfigExpectPlatform.emoteCache();
+            case BUNDLE -> ConfigExpectPlatform.binaryFraming() && ConfigExpectPlatform.bundleFrames();
+            case INTEREST -> ConfigExpectPlatform.binaryFraming() && ConfigExpectPlatform.interestManagement();
+            case SESSION -> ConfigExpectPlatform.binaryFraming() && ConfigExpectPlatform.sessionProtocol();
+        };
+    }
+
+    public static Set<RelayFeature> requested() {
+        Set<RelayFeature> features = EnumSet.noneOf(RelayFeature.class);
+
+        for (RelayFeature feature : values()) {
+            if (feature.isEnabled()) {
+                features.add(feature);
+            }
+        }
+
+        return features;
+    }
+
+    public static String join(Collection<RelayFeature> features) {
+        return features.stream()
+                .map(RelayFeature::getId)
+                .collect(Collectors.joining(","));
+    }
+
+    public static Set<RelayFeature> parse(@Nullable String header) {
+        Set<RelayFeature> features = EnumSet.noneOf(RelayFeature.class);
+
+        if (header == null || header.isBlank()) {
+            return features;
+        }
+
+        for (String id : header.split(",")) {
+            for (RelayFeature feature : values()) {
+                if (feature.id.equalsIgnoreCase(id.trim())) {
+                    features.add(feature);
+                }
+            }
+        }
+
+        return features;
+    }
+}
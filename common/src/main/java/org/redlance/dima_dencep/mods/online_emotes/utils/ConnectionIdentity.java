@@ -0,0 +1,174 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.utils;
+
+import org.redlance.dima_dencep.mods.online_emotes.OnlineEmotes;
+import org.redlance.dima_dencep.mods.online_emotes.network.FrameType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import net.minecraft.client.player.LocalPlayer;
+import net.minecraft.network.Connection;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Who is sending and from which server. Captured once per server join and reused for every packet,
+ * together with its pre-encoded binary frame header.
+ */
+public final class ConnectionIdentity {
+    public static final ConnectionIdentity EMPTY = new ConnectionIdentity(null, null, null);
+    /**
+     * Header without any fields, used once the relay knows the identity from {@link FrameType#CONTEXT}.
+     */
+    public static final byte[] NO_IDENTITY_HEADER = {0};
+    private static final int MAX_STRING_LENGTH = 0xFFFF;
+
+    @Nullable
+    public final String playerName;
+    @Nullable
+    public final UUID playerUUID;
+    @Nullable
+    public final String serverAddress;
+
+    /**
+     * Flags, UUID, name and address as written after the {@link FrameType#EMOTE} byte.
+     */
+    public final byte[] binaryHeader;
+
+    public ConnectionIdentity(@Nullable String playerName, @Nullable UUID playerUUID, @Nullable String serverAddress) {
+        this.playerName = playerName;
+        this.playerUUID = playerUUID;
+        this.serverAddress = serverAddress;
+        this.binaryHeader = encodeHeader();
+    }
+
+    public static ConnectionIdentity capture(@Nullable LocalPlayer player) {
+        if (player == null) {
+            return EMPTY;
+        }
+
+        String serverAddress = null;
+
+        Connection connection = player.connection.getConnection();
+        if (!connection.isMemoryConnection()) {
+            serverAddress = getIP(connection.getRemoteAddress());
+        }
+
+        return new ConnectionIdentity(player.getScoreboardName(), player.getUUID(), serverAddress);
+    }
+
+    /**
+     * @return a {@link FrameType#CONTEXT} frame with the fields that differ from {@code previous},
+     * or {@code null} if nothing changed
+     */
+    @Nullable
+    public ByteBuf encodeContext(ConnectionIdentity previous, ByteBufAllocator alloc) {
+        int flags = 0;
+        if (!Objects.equals(this.playerUUID, previous.playerUUID)) {
+            flags |= this.playerUUID != null ? FrameType.FLAG_UUID : FrameType.FLAG_CLEAR_UUID;
+        }
+        if (!Objects.equals(this.playerName, previous.playerName)) {
+            flags |= this.playerName != null ? FrameType.FLAG_NAME : FrameType.FLAG_CLEAR_NAME;
+        }
+        if (!Objects.equals(this.serverAddress, previous.serverAddress)) {
+            flags |= this.serverAddress != null ? FrameType.FLAG_ADDRESS : FrameType.FLAG_CLEAR_ADDRESS;
+        }
+
+        if (flags == 0) {
+            return null;
+        }
+
+        ByteBuf buf = alloc.buffer();
+        buf.writeByte(FrameType.CONTEXT.getId());
+        buf.writeByte(flags);
+
+        if ((flags & FrameType.FLAG_UUID) != 0) {
+            buf.writeLong(this.playerUUID.getMostSignificantBits());
+            buf.writeLong(this.playerUUID.getLeastSignificantBits());
+        }
+
+        if ((flags & FrameType.FLAG_NAME) != 0) {
+            writeString(buf, this.playerName);
+        }
+
+        if ((flags & FrameType.FLAG_ADDRESS) != 0) {
+            writeString(buf, this.serverAddress);
+        }
+
+        return buf;
+    }
+
+    private byte[] encodeHeader() {
+        int flags = 0;
+        if (this.playerUUID != null) flags |= FrameType.FLAG_UUID;
+        if (this.playerName != null) flags |= FrameType.FLAG_NAME;
+        if (this.serverAddress != null) flags |= FrameType.FLAG_ADDRESS;
+
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            buf.writeByte(flags);
+
+            if (this.playerUUID != null) {
+                buf.writeLong(this.playerUUID.getMostSignificantBits());
+                buf.writeLong(this.playerUUID.getLeastSignificantBits());
+            }
+
+            if (this.playerName != null) {
+                writeString(buf, this.playerName);
+            }
+
+            if (this.serverAddress != null) {
+                writeString(buf, this.serverAddress);
+            }
+
+            return ByteBufUtil.getBytes(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * Writes {@code value} with an unsigned short length prefix, truncating it if it does not fit.
+     */
+    private static void writeString(ByteBuf buf, String value) {
+        int length = ByteBufUtil.utf8Bytes(value);
+
+        if (length > MAX_STRING_LENGTH) {
+            OnlineEmotes.LOGGER.warn("Identity field is {} bytes long, truncating it to fit the frame header!", length);
+
+            // A char is at most 3 bytes in UTF-8, don't cut a surrogate pair in half
+            int end = MAX_STRING_LENGTH / 3;
+            if (Character.isHighSurrogate(value.charAt(end - 1))) {
+                end--;
+            }
+
+            value = value.substring(0, end);
+            length = ByteBufUtil.utf8Bytes(value);
+        }
+
+        buf.writeShort(length);
+        ByteBufUtil.writeUtf8(buf, value);
+    }
+
+    private static String getIP(SocketAddress address) {
+        if (address instanceof InetSocketAddress inetSocketAddress) {
+            return inetSocketAddress.getAddress().getHostAddress();
+        }
+
+        return address.toString();
+    }
+}
@@ -10,19 +10,24 @@
 
 package org.redlance.dima_dencep.mods.online_emotes.utils;
 
+import org.redlance.dima_dencep.mods.online_emotes.network.FrameType;
 import io.github.kosmx.emotes.main.config.ClientSerializer;
 import io.github.kosmx.emotes.server.config.Serializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
-import net.minecraft.client.Minecraft;
-import net.minecraft.client.player.LocalPlayer;
-import net.minecraft.network.Connection;
 import org.jetbrains.annotations.Nullable;
 
-import java.net.InetSocketAddress;
-import java.net.SocketAddress;
 import java.util.UUID;
 
 public class EmotePacketWrapper {
+    static {
+        if (Serializer.serializer == null) {
+            new ClientSerializer().initializeSerializer();
+        }
+    }
+
     public final byte[] emotePacket;
 
     @Nullable
@@ -32,34 +37,31 @@ public class EmotePacketWrapper {
     @Nullable
     public String serverAddress;
 
-    public EmotePacketWrapper(byte[] emotePacket) {
-        this.emotePacket = emotePacket;
-
-        LocalPlayer player = Minecraft.getInstance().player;
-        if (player != null) {
-            this.playerName = player.getScoreboardName();
-            this.playerUUID = player.getUUID();
+    private final transient byte[] binaryHeader;
 
-            Connection connection = player.connection.getConnection();
-            if (!connection.isMemoryConnection()) {
-                this.serverAddress = getIP(connection.getRemoteAddress());
-            }
-        }
-
-        if (Serializer.serializer == null) {
-            new ClientSerializer().initializeSerializer();
-        }
+    public EmotePacketWrapper(byte[] emotePacket, ConnectionIdentity identity) {
+        this.emotePacket = emotePacket;
+        this.playerName = identity.playerName;
+        this.playerUUID = identity.playerUUID;
+        this.serverAddress = identity.serverAddress;
+        this.binaryHeader = identity.binaryHeader;
     }
 
     public TextWebSocketFrame toWebSocketFrame() {
         return new TextWebSocketFrame(Serializer.serializer.toJson(this));
     }
 
-    private static String getIP(SocketAddress address) {
-        if (address instanceof InetSocketAddress inetSocketAddress) {
-            return inetSocketAddress.getAddress().getHostAddress();
-        }
+    /**
+     * @param withIdentity {@code false} once the relay knows the sender from {@link FrameType#CONTEXT}
+     */
+    public BinaryWebSocketFrame toBinaryFrame(ByteBufAllocator alloc, boolean withIdentity) {
+        byte[] header = withIdentity ? this.binaryHeader : ConnectionIdentity.NO_IDENTITY_HEADER;
+
+        ByteBuf buf = alloc.buffer(1 + header.length + this.emotePacket.length);
+        buf.writeByte(FrameType.EMOTE.getId());
+        buf.writeBytes(header);
+        buf.writeBytes(this.emotePacket);
 
-        return address.toString();
+        return new BinaryWebSocketFrame(buf);
     }
 }
@@ -11,15 +11,49 @@
 package org.redlance.dima_dencep.mods.online_emotes.utils;
 
 import org.redlance.dima_dencep.mods.online_emotes.ConfigExpectPlatform;
+import org.redlance.dima_dencep.mods.online_emotes.OnlineEmotes;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufAllocatorMetric;
+import io.netty.buffer.ByteBufAllocatorMetricProvider;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.AdaptiveRecvByteBufAllocator;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDatagramChannel;
 import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketClientExtensionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilter;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilterProvider;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateClientExtensionHandshaker;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateServerExtensionHandshaker;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.resolver.AddressResolverGroup;
+import io.netty.resolver.DefaultAddressResolverGroup;
+import io.netty.resolver.ResolvedAddressTypes;
+import io.netty.resolver.dns.DefaultDnsCache;
+import io.netty.resolver.dns.DnsAddressResolverGroup;
+import io.netty.resolver.dns.DnsNameResolverBuilder;
 
+import javax.net.ssl.SSLException;
+import java.net.InetSocketAddress;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class NettyObjectFactory {
@@ -30,6 +64,8 @@ public class NettyObjectFactory {
         thread.setDaemon(true);
         return thread;
     };
+    private static SslContext sslContext;
+    private static AddressResolverGroup<InetSocketAddress> resolverGroup;
 
     public static EventLoopGroup newEventLoopGroup() {
         if (Epoll.isAvailable() && ConfigExpectPlatform.useEpoll()) {
@@ -46,4 +82,131 @@ public class NettyObjectFactory {
             return NioSocketChannel.class;
         }
     }
+
+    public static Class<? extends DatagramChannel> getDatagramChannel() {
+        if (Epoll.isAvailable() && ConfigExpectPlatform.useEpoll()) {
+            return EpollDatagramChannel.class;
+        } else {
+            return NioDatagramChannel.class;
+        }
+    }
+
+    /**
+     * Netty's own non-blocking DNS resolver instead of {@link java.net.InetAddress}, which blocks the event loop.
+     * Every event loop gets its own resolver, but they share one cache that honours record TTLs,
+     * so reconnects and endpoint probes skip the lookup.
+     */
+    public static synchronized AddressResolverGroup<InetSocketAddress> getResolverGroup() {
+        if (resolverGroup == null) {
+            if (ConfigExpectPlatform.asyncDns()) {
+                resolverGroup = new DnsAddressResolverGroup(new DnsNameResolverBuilder()
+                        .channelType(getDatagramChannel())
+                        .resolveCache(new DefaultDnsCache())
+                        .resolvedAddressTypes(ConfigExpectPlatform.happyEyeballs() ?
+                                ResolvedAddressTypes.IPV6_PREFERRED : ResolvedAddressTypes.IPV4_PREFERRED
+                        )
+                );
+            } else {
+                resolverGroup = DefaultAddressResolverGroup.INSTANCE;
+            }
+        }
+
+        return resolverGroup;
+    }
+
+    /**
+     * One context for the whole process, so its session cache survives reconnects and TLS sessions get resumed.
+     * Uses OpenSSL/BoringSSL when netty-tcnative is on the classpath.
+     */
+    public static synchronized SslContext getSslContext() throws SSLException {
+        if (sslContext == null) {
+            SslProvider provider = OpenSsl.isAvailable() ? SslProvider.OPENSSL : SslProvider.JDK;
+
+            SslContextBuilder builder = SslContextBuilder.forClient()
+                    .sslProvider(provider)
+                    .sessionCacheSize(16)
+                    .sessionTimeout(TimeUnit.HOURS.toSeconds(1L));
+
+            if (ConfigExpectPlatform.useAlpn() && SslProvider.isAlpnSupported(provider)) {
+                builder.applicationProtocolConfig(new ApplicationProtocolConfig(
+                        ApplicationProtocolConfig.Protocol.ALPN,
+                        ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                        ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                        ApplicationProtocolNames.HTTP_1_1
+                ));
+            }
+
+            sslContext = builder.build();
+
+            OnlineEmotes.LOGGER.info("Using {} TLS provider", provider);
+        }
+
+        return sslContext;
+    }
+
+    /**
+     * A dedicated allocator with a single small arena, the emote channel is too quiet to justify Netty's default pools.
+     */
+    public static ByteBufAllocator newAllocator() {
+        return switch (ConfigExpectPlatform.allocator()) {
+            case POOLED_DIRECT -> new PooledByteBufAllocator(true, 1, 1, 8192, 7);
+            case POOLED_HEAP -> new PooledByteBufAllocator(false, 1, 0, 8192, 7);
+            case UNPOOLED -> new UnpooledByteBufAllocator(false);
+        };
+    }
+
+    /**
+     * Sized to emote packets: most are a few hundred bytes, the largest are {@link ConfigExpectPlatform#maxContentLength()}.
+     */
+    public static RecvByteBufAllocator newRecvAllocator() {
+        return new AdaptiveRecvByteBufAllocator(64, 2048, Math.max(2048, ConfigExpectPlatform.maxContentLength()));
+    }
+
+    public static WriteBufferWaterMark newWaterMark() {
+        int maxContentLength = ConfigExpectPlatform.maxContentLength();
+
+        return new WriteBufferWaterMark(maxContentLength, maxContentLength * 2);
+    }
+
+    public static void logAllocatorUsage(ByteBufAllocator allocator) {
+        if (allocator instanceof ByteBufAllocatorMetricProvider provider) {
+            ByteBufAllocatorMetric metric = provider.metric();
+
+            OnlineEmotes.LOGGER.info("Allocator usage: {} bytes heap, {} bytes direct",
+                    metric.usedHeapMemory(), metric.usedDirectMemory()
+            );
+        }
+    }
+
+    /**
+     * permessage-deflate, where outgoing frames smaller than {@link ConfigExpectPlatform#compressionThreshold()}
+     * are sent uncompressed, small stop packets would only grow from deflating.
+     */
+    public static WebSocketClientExtensionHandler newCompressionHandler() {
+        int threshold = ConfigExpectPlatform.compressionThreshold();
+
+        return new WebSocketClientExtensionHandler(new PerMessageDeflateClientExtensionHandshaker(6,
+                ZlibCodecFactory.isSupportingWindowSizeAndMemLevel(),
+                PerMessageDeflateServerExtensionHandshaker.MAX_WINDOW_SIZE,
+                false,
+                false,
+                new WebSocketExtensionFilterProvider() {
+                    @Override
+                    public WebSocketExtensionFilter encoderFilter() {
+                        return (WebSocketFrame frame) -> frame.content().readableBytes() < threshold;
+                    }
+
+                    @Override
+                    public WebSocketExtensionFilter decoderFilter() {
+                        return WebSocketExtensionFilter.NEVER_SKIP;
+                    }
+                }
+        ));
+    }
+
+    public enum AllocatorType {
+        POOLED_DIRECT,
+        POOLED_HEAP,
+        UNPOOLED
+    }
 }
@@ -11,19 +11,31 @@
 package org.redlance.dima_dencep.mods.online_emotes.fabric;
 
 import org.redlance.dima_dencep.mods.online_emotes.OnlineEmotes;
+import org.redlance.dima_dencep.mods.online_emotes.network.OutboundQueue;
+import org.redlance.dima_dencep.mods.online_emotes.network.RelayEndpoints;
+import org.redlance.dima_dencep.mods.online_emotes.utils.NettyObjectFactory;
 import io.netty.channel.epoll.Epoll;
 import me.shedaniel.autoconfig.ConfigData;
 import me.shedaniel.autoconfig.annotation.Config;
 import me.shedaniel.autoconfig.annotation.ConfigEntry;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @SuppressWarnings("unused")
 @Config(name = OnlineEmotes.MOD_ID)
 public class ConfigExpectPlatformImpl implements ConfigData {
     @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.BoundedDiscrete(min = 1, max = 3600)
     public long reconnectionDelay = 15L;
 
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.BoundedDiscrete(min = 1, max = 86400)
+    public long maxReconnectionDelay = 300L;
+
     public boolean replaceMessages = false;
 
+    @ConfigEntry.Gui.Tooltip
     public boolean debug = false;
 
     @ConfigEntry.Gui.Tooltip
@@ -39,12 +51,115 @@ public class ConfigExpectPlatformImpl implements ConfigData {
 
     @ConfigEntry.Gui.Tooltip
     @ConfigEntry.Category("netty")
-    public boolean selfPings = false;
+    @ConfigEntry.Gui.RequiresRestart
+    public int threads = 0;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    public boolean binaryFraming = true;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    @ConfigEntry.BoundedDiscrete(min = 1, max = 4096)
+    public int sendQueueSize = 64;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    @ConfigEntry.Gui.EnumHandler(option = ConfigEntry.Gui.EnumHandler.EnumDisplayOption.BUTTON)
+    public OutboundQueue.OverflowPolicy sendQueueOverflow = OutboundQueue.OverflowPolicy.DROP_OLDEST;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    public boolean batchFlushes = true;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    public boolean compression = true;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    @ConfigEntry.BoundedDiscrete(min = 0, max = 1048576)
+    public int compressionThreshold = 256;
 
     @ConfigEntry.Gui.Tooltip
     @ConfigEntry.Category("netty")
     @ConfigEntry.Gui.RequiresRestart
-    public int threads = 0;
+    @ConfigEntry.Gui.EnumHandler(option = ConfigEntry.Gui.EnumHandler.EnumDisplayOption.BUTTON)
+    public NettyObjectFactory.AllocatorType allocator = NettyObjectFactory.AllocatorType.POOLED_DIRECT;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    @ConfigEntry.Gui.RequiresRestart
+    public boolean useAlpn = false;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    public boolean persistentSession = true;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    @ConfigEntry.BoundedDiscrete(min = 1, max = 3600)
+    public long sessionIdleTimeout = 60L;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    @ConfigEntry.BoundedDiscrete(min = 1, max = 300)
+    public long heartbeatInterval = 20L;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    @ConfigEntry.BoundedDiscrete(min = 1, max = 10)
+    public int heartbeatMaxMissed = 3;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    public List<String> relayEndpoints = new ArrayList<>(List.of(RelayEndpoints.DEFAULT));
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    @ConfigEntry.Gui.RequiresRestart
+    public boolean asyncDns = true;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    @ConfigEntry.Gui.RequiresRestart
+    public boolean happyEyeballs = true;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    @ConfigEntry.BoundedDiscrete(min = 0, max = 1000)
+    public int receiveRateLimit = 10;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    @ConfigEntry.BoundedDiscrete(min = 0, max = 10000)
+    public long duplicateWindow = 500L;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    public boolean emoteCache = true;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    @ConfigEntry.BoundedDiscrete(min = 1, max = 4096)
+    public int emoteCacheSize = 256;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    public boolean bundleFrames = true;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    public boolean interestManagement = true;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    @ConfigEntry.BoundedDiscrete(min = 1, max = 200)
+    public int interestInterval = 20;
+
+    @ConfigEntry.Gui.Tooltip
+    @ConfigEntry.Category("netty")
+    public boolean sessionProtocol = true;
 
     public static long reconnectionDelay() {
         return FabricOnlineEmotes.MOD_CONFIG.reconnectionDelay;
@@ -66,11 +181,103 @@ public class ConfigExpectPlatformImpl implements ConfigData {
         return FabricOnlineEmotes.MOD_CONFIG.useEpoll;
     }
 
-    public static boolean selfPings() {
-        return FabricOnlineEmotes.MOD_CONFIG.selfPings;
-    }
-
     public static int threads() {
         return FabricOnlineEmotes.MOD_CONFIG.threads;
     }
+
+    public static boolean binaryFraming() {
+        return FabricOnlineEmotes.MOD_CONFIG.binaryFraming;
+    }
+
+    public static int sendQueueSize() {
+        return FabricOnlineEmotes.MOD_CONFIG.sendQueueSize;
+    }
+
+    public static OutboundQueue.OverflowPolicy sendQueueOverflow() {
+        return FabricOnlineEmotes.MOD_CONFIG.sendQueueOverflow;
+    }
+
+    public static boolean batchFlushes() {
+        return FabricOnlineEmotes.MOD_CONFIG.batchFlushes;
+    }
+
+    public static boolean compression() {
+        return FabricOnlineEmotes.MOD_CONFIG.compression;
+    }
+
+    public static int compressionThreshold() {
+        return FabricOnlineEmotes.MOD_CONFIG.compressionThreshold;
+    }
+
+    public static NettyObjectFactory.AllocatorType allocator() {
+        return FabricOnlineEmotes.MOD_CONFIG.allocator;
+    }
+
+    public static long maxReconnectionDelay() {
+        return FabricOnlineEmotes.MOD_CONFIG.maxReconnectionDelay;
+    }
+
+    public static boolean useAlpn() {
+        return FabricOnlineEmotes.MOD_CONFIG.useAlpn;
+    }
+
+    public static boolean persistentSession() {
+        return FabricOnlineEmotes.MOD_CONFIG.persistentSession;
+    }
+
+    public static long sessionIdleTimeout() {
+        return FabricOnlineEmotes.MOD_CONFIG.sessionIdleTimeout;
+    }
+
+    public static long heartbeatInterval() {
+        return FabricOnlineEmotes.MOD_CONFIG.heartbeatInterval;
+    }
+
+    public static int heartbeatMaxMissed() {
+        return FabricOnlineEmotes.MOD_CONFIG.heartbeatMaxMissed;
+    }
+
+    public static List<String> relayEndpoints() {
+        return FabricOnlineEmotes.MOD_CONFIG.relayEndpoints;
+    }
+
+    public static boolean asyncDns() {
+        return FabricOnlineEmotes.MOD_CONFIG.asyncDns;
+    }
+
+    public static boolean happyEyeballs() {
+        return FabricOnlineEmotes.MOD_CONFIG.happyEyeballs;
+    }
+
+    public static int receiveRateLimit() {
+        return FabricOnlineEmotes.MOD_CONFIG.receiveRateLimit;
+    }
+
+    public static long duplicateWindow() {
+        return FabricOnlineEmotes.MOD_CONFIG.duplicateWindow;
+    }
+
+    public static boolean emoteCache() {
+        return FabricOnlineEmotes.MOD_CONFIG.emoteCache;
+    }
+
+    public static int emoteCacheSize() {
+        return FabricOnlineEmotes.MOD_CONFIG.emoteCacheSize;
+    }
+
+    public static boolean bundleFrames() {
+        return FabricOnlineEmotes.MOD_CONFIG.bundleFrames;
+    }
+
+    public static boolean interestManagement() {
+        return FabricOnlineEmotes.MOD_CONFIG.interestManagement;
+    }
+
+    public static int interestInterval() {
+        return FabricOnlineEmotes.MOD_CONFIG.interestInterval;
+    }
+
+    public static boolean sessionProtocol() {
+        return FabricOnlineEmotes.MOD_CONFIG.sessionProtocol;
+    }
 }
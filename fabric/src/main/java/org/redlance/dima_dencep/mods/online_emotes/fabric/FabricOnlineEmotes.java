@@ -11,6 +11,7 @@
 package org.redlance.dima_dencep.mods.online_emotes.fabric;
 
 import org.redlance.dima_dencep.mods.online_emotes.OnlineEmotes;
+import org.redlance.dima_dencep.mods.online_emotes.utils.ConnectionIdentity;
 import me.shedaniel.autoconfig.AutoConfig;
 import me.shedaniel.autoconfig.serializer.Toml4jConfigSerializer;
 import net.fabricmc.api.ClientModInitializer;
@@ -34,16 +35,12 @@ public class FabricOnlineEmotes extends OnlineEmotes implements ClientModInitial
     }
 
     public void onJoin(ClientPacketListener handler, PacketSender packetSender, Minecraft minecraftClient) {
-        if (proxy.isActive()) {
-            proxy.sendOnlineEmotesConfig();
-        } else {
-            proxy.connect();
-        }
+        proxy.setIdentity(ConnectionIdentity.capture(minecraftClient.player));
+        proxy.joinServer();
     }
 
     private void onDisconnect(ClientPacketListener handler, Minecraft minecraftClient) {
-        if (proxy.isActive()) {
-            proxy.disconnect();
-        }
+        proxy.setIdentity(ConnectionIdentity.EMPTY);
+        proxy.leaveServer();
     }
 }
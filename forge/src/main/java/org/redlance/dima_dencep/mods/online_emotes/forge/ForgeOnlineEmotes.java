@@ -11,6 +11,7 @@
 package org.redlance.dima_dencep.mods.online_emotes.forge;
 
 import org.redlance.dima_dencep.mods.online_emotes.OnlineEmotes;
+import org.redlance.dima_dencep.mods.online_emotes.utils.ConnectionIdentity;
 import net.neoforged.neoforge.client.event.ClientPlayerNetworkEvent;
 import net.neoforged.neoforge.common.NeoForge;
 import net.neoforged.bus.api.SubscribeEvent;
@@ -26,17 +27,13 @@ public class ForgeOnlineEmotes extends OnlineEmotes {
 
     @SubscribeEvent
     public void onJoin(ClientPlayerNetworkEvent.LoggingIn event) {
-        if (proxy.isActive()) {
-            proxy.sendOnlineEmotesConfig();
-        } else {
-            proxy.connect();
-        }
+        proxy.setIdentity(ConnectionIdentity.capture(event.getPlayer()));
+        proxy.joinServer();
     }
 
     @SubscribeEvent
     public void onExit(ClientPlayerNetworkEvent.LoggingOut event) {
-        if (proxy.isActive()) {
-            proxy.disconnect();
-        }
+        proxy.setIdentity(ConnectionIdentity.EMPTY);
+        proxy.leaveServer();
     }
 }
@@ -11,6 +11,9 @@
 package org.redlance.dima_dencep.mods.online_emotes.neoforge;
 
 import org.redlance.dima_dencep.mods.online_emotes.OnlineEmotes;
+import org.redlance.dima_dencep.mods.online_emotes.network.OutboundQueue;
+import org.redlance.dima_dencep.mods.online_emotes.network.RelayEndpoints;
+import org.redlance.dima_dencep.mods.online_emotes.utils.NettyObjectFactory;
 import io.netty.channel.epoll.Epoll;
 import net.neoforged.fml.ModContainer;
 import net.neoforged.fml.ModList;
@@ -20,23 +23,54 @@ import net.neoforged.fml.loading.FMLPaths;
 import net.neoforged.neoforge.common.ModConfigSpec;
 import org.apache.commons.lang3.tuple.Pair;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @SuppressWarnings("unused")
 public class ConfigExpectPlatformImpl {
     public static final Pair<ConfigExpectPlatformImpl, ModConfigSpec> CONFIG_SPEC_PAIR = new ModConfigSpec.Builder()
             .configure(ConfigExpectPlatformImpl::new);
     public final ModConfigSpec.ConfigValue<Long> reconnectionDelay;
+    public final ModConfigSpec.ConfigValue<Long> maxReconnectionDelay;
     public final ModConfigSpec.BooleanValue replaceMessages;
     public final ModConfigSpec.BooleanValue debug;
     public final ModConfigSpec.IntValue maxContentLength;
     public final ModConfigSpec.BooleanValue useEpoll;
-    public final ModConfigSpec.BooleanValue selfPings;
     public final ModConfigSpec.ConfigValue<Integer> threads;
+    public final ModConfigSpec.BooleanValue binaryFraming;
+    public final ModConfigSpec.IntValue sendQueueSize;
+    public final ModConfigSpec.EnumValue<OutboundQueue.OverflowPolicy> sendQueueOverflow;
+    public final ModConfigSpec.BooleanValue batchFlushes;
+    public final ModConfigSpec.BooleanValue compression;
+    public final ModConfigSpec.IntValue compressionThreshold;
+    public final ModConfigSpec.EnumValue<NettyObjectFactory.AllocatorType> allocator;
+    public final ModConfigSpec.BooleanValue useAlpn;
+    public final ModConfigSpec.BooleanValue persistentSession;
+    public final ModConfigSpec.ConfigValue<Long> sessionIdleTimeout;
+    public final ModConfigSpec.ConfigValue<Long> heartbeatInterval;
+    public final ModConfigSpec.IntValue heartbeatMaxMissed;
+    public final ModConfigSpec.ConfigValue<List<? extends String>> relayEndpoints;
+    public final ModConfigSpec.BooleanValue asyncDns;
+    public final ModConfigSpec.BooleanValue happyEyeballs;
+    public final ModConfigSpec.IntValue receiveRateLimit;
+    public final ModConfigSpec.ConfigValue<Long> duplicateWindow;
+    public final ModConfigSpec.BooleanValue emoteCache;
+    public final ModConfigSpec.IntValue emoteCacheSize;
+    public final ModConfigSpec.BooleanValue bundleFrames;
+    public final ModConfigSpec.BooleanValue interestManagement;
+    public final ModConfigSpec.IntValue interestInterval;
+    public final ModConfigSpec.BooleanValue sessionProtocol;
 
     public ConfigExpectPlatformImpl(ModConfigSpec.Builder builder) {
         reconnectionDelay = builder
                 .translation("text.autoconfig.online_emotes.option.reconnectionDelay")
                 .comment("text.autoconfig.online_emotes.option.reconnectionDelay.@Tooltip")
-                .define("reconnectionDelay", 15L);
+                .defineInRange("reconnectionDelay", 15L, 1L, 3600L);
+
+        maxReconnectionDelay = builder
+                .translation("text.autoconfig.online_emotes.option.maxReconnectionDelay")
+                .comment("text.autoconfig.online_emotes.option.maxReconnectionDelay.@Tooltip")
+                .defineInRange("maxReconnectionDelay", 300L, 1L, 86400L);
 
         replaceMessages = builder
                 .translation("text.autoconfig.online_emotes.option.replaceMessages")
@@ -44,6 +78,7 @@ public class ConfigExpectPlatformImpl {
 
         debug = builder
                 .translation("text.autoconfig.online_emotes.option.debug")
+                .comment("text.autoconfig.online_emotes.option.debug.@Tooltip")
                 .define("debug", false);
 
         maxContentLength = builder
@@ -58,16 +93,130 @@ public class ConfigExpectPlatformImpl {
                 .worldRestart()
                 .define("useEpoll", Epoll.isAvailable());
 
-        selfPings = builder
-                .translation("text.autoconfig.online_emotes.option.selfPings")
-                .comment("text.autoconfig.online_emotes.option.selfPings.@Tooltip")
-                .define("selfPings", false);
-
         threads = builder
                 .translation("text.autoconfig.online_emotes.option.threads")
                 .comment("text.autoconfig.online_emotes.option.threads.@Tooltip")
                 .worldRestart()
                 .define("threads", 0);
+
+        binaryFraming = builder
+                .translation("text.autoconfig.online_emotes.option.binaryFraming")
+                .comment("text.autoconfig.online_emotes.option.binaryFraming.@Tooltip")
+                .define("binaryFraming", true);
+
+        sendQueueSize = builder
+                .translation("text.autoconfig.online_emotes.option.sendQueueSize")
+                .comment("text.autoconfig.online_emotes.option.sendQueueSize.@Tooltip")
+                .defineInRange("sendQueueSize", 64, 1, 4096);
+
+        sendQueueOverflow = builder
+                .translation("text.autoconfig.online_emotes.option.sendQueueOverflow")
+                .comment("text.autoconfig.online_emotes.option.sendQueueOverflow.@Tooltip")
+                .defineEnum("sendQueueOverflow", OutboundQueue.OverflowPolicy.DROP_OLDEST);
+
+        batchFlushes = builder
+                .translation("text.autoconfig.online_emotes.option.batchFlushes")
+                .comment("text.autoconfig.online_emotes.option.batchFlushes.@Tooltip")
+                .define("batchFlushes", true);
+
+        compression = builder
+                .translation("text.autoconfig.online_emotes.option.compression")
+                .comment("text.autoconfig.online_emotes.option.compression.@Tooltip")
+                .define("compression", true);
+
+        compressionThreshold = builder
+                .translation("text.autoconfig.online_emotes.option.compressionThreshold")
+                .comment("text.autoconfig.online_emotes.option.compressionThreshold.@Tooltip")
+                .defineInRange("compressionThreshold", 256, 0, 1048576);
+
+        allocator = builder
+                .translation("text.autoconfig.online_emotes.option.allocator")
+                .comment("text.autoconfig.online_emotes.option.allocator.@Tooltip")
+                .worldRestart()
+                .defineEnum("allocator", NettyObjectFactory.AllocatorType.POOLED_DIRECT);
+
+        useAlpn = builder
+                .translation("text.autoconfig.online_emotes.option.useAlpn")
+                .comment("text.autoconfig.online_emotes.option.useAlpn.@Tooltip")
+                .worldRestart()
+                .define("useAlpn", false);
+
+        persistentSession = builder
+                .translation("text.autoconfig.online_emotes.option.persistentSession")
+                .comment("text.autoconfig.online_emotes.option.persistentSession.@Tooltip")
+                .define("persistentSession", true);
+
+        sessionIdleTimeout = builder
+                .translation("text.autoconfig.online_emotes.option.sessionIdleTimeout")
+                .comment("text.autoconfig.online_emotes.option.sessionIdleTimeout.@Tooltip")
+                .defineInRange("sessionIdleTimeout", 60L, 1L, 3600L);
+
+        heartbeatInterval = builder
+                .translation("text.autoconfig.online_emotes.option.heartbeatInterval")
+                .comment("text.autoconfig.online_emotes.option.heartbeatInterval.@Tooltip")
+                .defineInRange("heartbeatInterval", 20L, 1L, 300L);
+
+        heartbeatMaxMissed = builder
+                .translation("text.autoconfig.online_emotes.option.heartbeatMaxMissed")
+                .comment("text.autoconfig.online_emotes.option.heartbeatMaxMissed.@Tooltip")
+                .defineInRange("heartbeatMaxMissed", 3, 1, 10);
+
+        relayEndpoints = builder
+                .translation("text.autoconfig.online_emotes.option.relayEndpoints")
+                .comment("text.autoconfig.online_emotes.option.relayEndpoints.@Tooltip")
+                .defineList("relayEndpoints", List.of(RelayEndpoints.DEFAULT), o -> o instanceof String);
+
+        asyncDns = builder
+                .translation("text.autoconfig.online_emotes.option.asyncDns")
+                .comment("text.autoconfig.online_emotes.option.asyncDns.@Tooltip")
+                .worldRestart()
+                .define("asyncDns", true);
+
+        happyEyeballs = builder
+                .translation("text.autoconfig.online_emotes.option.happyEyeballs")
+                .comment("text.autoconfig.online_emotes.option.happyEyeballs.@Tooltip")
+                .worldRestart()
+                .define("happyEyeballs", true);
+
+        receiveRateLimit = builder
+                .translation("text.autoconfig.online_emotes.option.receiveRateLimit")
+                .comment("text.autoconfig.online_emotes.option.receiveRateLimit.@Tooltip")
+                .defineInRange("receiveRateLimit", 10, 0, 1000);
+
+        duplicateWindow = builder
+                .translation("text.autoconfig.online_emotes.option.duplicateWindow")
+                .comment("text.autoconfig.online_emotes.option.duplicateWindow.@Tooltip")
+                .defineInRange("duplicateWindow", 500L, 0L, 10000L);
+
+        emoteCache = builder
+                .translation("text.autoconfig.online_emotes.option.emoteCache")
+                .comment("text.autoconfig.online_emotes.option.emoteCache.@Tooltip")
+                .define("emoteCache", true);
+
+        emoteCacheSize = builder
+                .translation("text.autoconfig.online_emotes.option.emoteCacheSize")
+                .comment("text.autoconfig.online_emotes.option.emoteCacheSize.@Tooltip")
+                .defineInRange("emoteCacheSize", 256, 1, 4096);
+
+        bundleFrames = builder
+                .translation("text.autoconfig.online_emotes.option.bundleFrames")
+                .comment("text.autoconfig.online_emotes.option.bundleFrames.@Tooltip")
+                .define("bundleFrames", true);
+
+        interestManagement = builder
+                .translation("text.autoconfig.online_emotes.option.interestManagement")
+                .comment("text.autoconfig.online_emotes.option.interestManagement.@Tooltip")
+                .define("interestManagement", true);
+
+        interestInterval = builder
+                .translation("text.autoconfig.online_emotes.option.interestInterval")
+                .comment("text.autoconfig.online_emotes.option.interestInterval.@Tooltip")
+                .defineInRange("interestInterval", 20, 1, 200);
+
+        sessionProtocol = builder
+                .translation("text.autoconfig.online_emotes.option.sessionProtocol")
+                .comment("text.autoconfig.online_emotes.option.sessionProtocol.@Tooltip")
+                .define("sessionProtocol", true);
     }
 
     static { // Early loading for config
@@ -107,11 +256,103 @@ public class ConfigExpectPlatformImpl {
         return CONFIG_SPEC_PAIR.getKey().useEpoll.get();
     }
 
-    public static boolean selfPings() {
-        return CONFIG_SPEC_PAIR.getKey().selfPings.get();
-    }
-
     public static int threads() {
         return CONFIG_SPEC_PAIR.getKey().threads.get();
     }
+
+    public static boolean binaryFraming() {
+        return CONFIG_SPEC_PAIR.getKey().binaryFraming.get();
+    }
+
+    public static int sendQueueSize() {
+        return CONFIG_SPEC_PAIR.getKey().sendQueueSize.get();
+    }
+
+    public static OutboundQueue.OverflowPolicy sendQueueOverflow() {
+        return CONFIG_SPEC_PAIR.getKey().sendQueueOverflow.get();
+    }
+
+    public static boolean batchFlushes() {
+        return CONFIG_SPEC_PAIR.getKey().batchFlushes.get();
+    }
+
+    public static boolean compression() {
+        return CONFIG_SPEC_PAIR.getKey().compression.get();
+    }
+
+    public static int compressionThreshold() {
+        return CONFIG_SPEC_PAIR.getKey().compressionThreshold.get();
+    }
+
+    public static NettyObjectFactory.AllocatorType allocator() {
+        return CONFIG_SPEC_PAIR.getKey().allocator.get();
+    }
+
+    public static long maxReconnectionDelay() {
+        return CONFIG_SPEC_PAIR.getKey().maxReconnectionDelay.get();
+    }
+
+    public static boolean useAlpn() {
+        return CONFIG_SPEC_PAIR.getKey().useAlpn.get();
+    }
+
+    public static boolean persistentSession() {
+        return CONFIG_SPEC_PAIR.getKey().persistentSession.get();
+    }
+
+    public static long sessionIdleTimeout() {
+        return CONFIG_SPEC_PAIR.getKey().sessionIdleTimeout.get();
+    }
+
+    public static long heartbeatInterval() {
+        return CONFIG_SPEC_PAIR.getKey().heartbeatInterval.get();
+    }
+
+    public static int heartbeatMaxMissed() {
+        return CONFIG_SPEC_PAIR.getKey().heartbeatMaxMissed.get();
+    }
+
+    public static List<String> relayEndpoints() {
+        return new ArrayList<>(CONFIG_SPEC_PAIR.getKey().relayEndpoints.get());
+    }
+
+    public static boolean asyncDns() {
+        return CONFIG_SPEC_PAIR.getKey().asyncDns.get();
+    }
+
+    public static boolean happyEyeballs() {
+        return CONFIG_SPEC_PAIR.getKey().happyEyeballs.get();
+    }
+
+    public static int receiveRateLimit() {
+        return CONFIG_SPEC_PAIR.getKey().receiveRateLimit.get();
+    }
+
+    public static long duplicateWindow() {
+        return CONFIG_SPEC_PAIR.getKey().duplicateWindow.get();
+    }
+
+    public static boolean emoteCache() {
+        return CONFIG_SPEC_PAIR.getKey().emoteCache.get();
+    }
+
+    public static int emoteCacheSize() {
+        return CONFIG_SPEC_PAIR.getKey().emoteCacheSize.get();
+    }
+
+    public static boolean bundleFrames() {
+        return CONFIG_SPEC_PAIR.getKey().bundleFrames.get();
+    }
+
+    public static boolean interestManagement() {
+        return CONFIG_SPEC_PAIR.getKey().interestManagement.get();
+    }
+
+    public static int interestInterval() {
+        return CONFIG_SPEC_PAIR.getKey().interestInterval.get();
+    }
+
+    public static boolean sessionProtocol() {
+        return CONFIG_SPEC_PAIR.getKey().sessionProtocol.get();
+    }
 }
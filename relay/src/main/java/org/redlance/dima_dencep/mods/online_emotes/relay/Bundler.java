@@ -0,0 +1,118 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.relay;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the frames fanned out to one client for up to {@link #DELAY} ms, or until the next one would pass {@link #MAX_SIZE} bytes,
+ * and writes them as a single {@link Protocol#BUNDLE}: one WebSocket header and one flush instead of one per emote.
+ */
+public class Bundler {
+    public static final long DELAY = 10L;
+    private static final int MAX_SIZE = 32768;
+
+    private final Channel channel;
+    private final List<ByteBuf> pending = new ArrayList<>();
+    private int size;
+    private boolean scheduled;
+
+    public Bundler(Channel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Takes ownership of {@code frame}. A bundle never grows past {@link #MAX_SIZE}: what is pending is sent first,
+     * and a frame too big to share a bundle is sent on its own.
+     */
+    public synchronized void add(ByteBuf frame) {
+        int frameSize = Integer.BYTES + frame.readableBytes();
+
+        if (1 + this.size + frameSize > MAX_SIZE) {
+            List<ByteBuf> frames = drain();
+
+            if (!frames.isEmpty()) {
+                this.channel.eventLoop().execute(() -> write(frames));
+            }
+
+            if (1 + frameSize > MAX_SIZE) {
+                this.channel.eventLoop().execute(() -> write(List.of(frame)));
+                return;
+            }
+        }
+
+        this.pending.add(frame);
+        this.size += frameSize;
+
+        if (!this.scheduled) {
+            this.scheduled = true;
+            this.channel.eventLoop().schedule(this::flush, DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        List<ByteBuf> frames;
+
+        synchronized (this) {
+            this.scheduled = false;
+            frames = drain();
+        }
+
+        write(frames);
+    }
+
+    private List<ByteBuf> drain() {
+        List<ByteBuf> frames = new ArrayList<>(this.pending);
+
+        this.pending.clear();
+        this.size = 0;
+
+        return frames;
+    }
+
+    private void write(List<ByteBuf> frames) {
+        if (frames.isEmpty()) {
+            return;
+        }
+
+        if (!this.channel.isActive()) {
+            frames.forEach(ByteBuf::release);
+            return;
+        }
+
+        ByteBuf content;
+        if (frames.size() == 1) {
+            content = frames.get(0);
+        } else {
+            int total = 1;
+            for (ByteBuf frame : frames) {
+                total += Integer.BYTES + frame.readableBytes();
+            }
+
+            content = this.channel.alloc().buffer(total);
+            content.writeByte(Protocol.BUNDLE);
+
+            for (ByteBuf frame : frames) {
+                content.writeInt(frame.readableBytes());
+                content.writeBytes(frame);
+                frame.release();
+            }
+        }
+
+        this.channel.writeAndFlush(new BinaryWebSocketFrame(content), this.channel.voidPromise());
+    }
+}
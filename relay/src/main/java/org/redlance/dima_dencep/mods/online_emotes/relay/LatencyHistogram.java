@@ -0,0 +1,92 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.relay;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of latencies in microseconds, accurate to about 6%.
+ * Values below 32 us get their own bucket, above that every power of two is split into 16 buckets.
+ */
+public class LatencyHistogram {
+    private static final int LINEAR = 32;
+    private static final int SUB_BUCKETS = 16;
+
+    private final AtomicLongArray counts = new AtomicLongArray(1024);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long micros = Math.max(0L, TimeUnit.NANOSECONDS.toMicros(nanos));
+
+        this.counts.incrementAndGet(indexOf(micros));
+        this.max.accumulateAndGet(micros, Math::max);
+    }
+
+    public long count() {
+        long count = 0L;
+        for (int i = 0; i < this.counts.length(); i++) {
+            count += this.counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @param percentile between {@code 0} and {@code 100}
+     * @return the lower bound of the bucket holding the percentile, in microseconds
+     */
+    public long percentile(double percentile) {
+        long total = count();
+        if (total == 0L) {
+            return 0L;
+        }
+
+        long target = Math.max(1L, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0L;
+
+        for (int i = 0; i < this.counts.length(); i++) {
+            seen += this.counts.get(i);
+
+            if (seen >= target) {
+                return valueOf(i);
+            }
+        }
+
+        return this.max.get();
+    }
+
+    public long max() {
+        return this.max.get();
+    }
+
+    private static int indexOf(long micros) {
+        if (micros < LINEAR) {
+            return (int) micros;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = exponent - 4;
+
+        return (exponent - 4) * SUB_BUCKETS + (int) (micros >>> shift);
+    }
+
+    private static long valueOf(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+
+        int exponent = index / SUB_BUCKETS + 3;
+        long sub = index % SUB_BUCKETS + SUB_BUCKETS;
+
+        return sub << (exponent - 4);
+    }
+}
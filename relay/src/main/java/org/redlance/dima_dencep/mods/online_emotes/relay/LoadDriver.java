@@ -0,0 +1,169 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.relay;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.websocketx.WebSocketClientHandshaker;
+import io.netty.handler.codec.http.websocketx.WebSocketClientHandshakerFactory;
+import io.netty.handler.codec.http.websocketx.WebSocketClientProtocolHandler;
+import io.netty.handler.codec.http.websocketx.WebSocketFrameAggregator;
+import io.netty.handler.codec.http.websocketx.WebSocketVersion;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+import java.net.URI;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Headless load generator: connects {@code --players} {@link VirtualPlayer}s to a relay, lets each of them emote
+ * {@code --rate} times per second for {@code --duration} seconds and prints the end-to-end latency percentiles.
+ * <p>
+ * Options, all optional: {@code --uri=ws://localhost:8080 --players=1000 --rate=1 --duration=30 --size=512
+ * --room-size=50 --framing=binary|json --connect-rate=500}
+ */
+public class LoadDriver {
+    public final URI uri;
+    public final int players;
+    public final double rate;
+    public final int duration;
+    public final int size;
+    public final int roomSize;
+    public final boolean binary;
+    public final int connectRate;
+
+    public final LongAdder connected = new LongAdder();
+    public final LongAdder failed = new LongAdder();
+    public final LongAdder sent = new LongAdder();
+    public final LongAdder skipped = new LongAdder();
+    public final LongAdder received = new LongAdder();
+    public final LatencyHistogram latency = new LatencyHistogram();
+
+    public LoadDriver(Map<String, String> options) {
+        this.uri = URI.create(options.getOrDefault("uri", "ws://localhost:8080"));
+        this.players = Integer.parseInt(options.getOrDefault("players", "1000"));
+        this.rate = Double.parseDouble(options.getOrDefault("rate", "1"));
+        this.duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        this.size = Math.max(Long.BYTES, Integer.parseInt(options.getOrDefault("size", "512")));
+        this.roomSize = Math.max(1, Integer.parseInt(options.getOrDefault("room-size", "50")));
+        this.binary = !"json".equalsIgnoreCase(options.getOrDefault("framing", "binary"));
+        this.connectRate = Math.max(1, Integer.parseInt(options.getOrDefault("connect-rate", "500")));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+
+        new LoadDriver(options).run();
+    }
+
+    public void run() throws InterruptedException {
+        EventLoopGroup group = new NioEventLoopGroup();
+        ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+
+        int port = this.uri.getPort() != -1 ? this.uri.getPort() : 80;
+
+        Bootstrap bootstrap = new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true);
+
+        try {
+            System.out.printf("Connecting %d players to %s (%s framing)...%n", this.players, this.uri, this.binary ? "binary" : "JSON");
+
+            for (int i = 0; i < this.players; i++) {
+                int index = i;
+
+                ChannelFuture future = bootstrap.clone().handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast("http-codec", new HttpClientCodec());
+                        ch.pipeline().addLast("aggregator", new HttpObjectAggregator(8192));
+                        ch.pipeline().addLast("handshaker", new WebSocketClientProtocolHandler(newHandshaker()));
+                        ch.pipeline().addLast("ws-aggregator", new WebSocketFrameAggregator(RelayServer.MAX_FRAME_LENGTH));
+                        ch.pipeline().addLast("player", new VirtualPlayer(LoadDriver.this, index));
+                    }
+                }).connect(this.uri.getHost(), port);
+
+                future.addListener((f) -> {
+                    if (f.isSuccess()) {
+                        channels.add(future.channel());
+                    } else {
+                        this.failed.increment();
+                    }
+                });
+
+                LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1L) / this.connectRate);
+            }
+
+            for (int second = 1; second <= this.duration; second++) {
+                Thread.sleep(1000L);
+
+                System.out.printf("[%3ds] connected: %d, failed: %d, sent: %d, received: %d, p99: %.2f ms%n",
+                        second, this.connected.sum(), this.failed.sum(), this.sent.sum(), this.received.sum(),
+                        this.latency.percentile(99.0) / 1000.0
+                );
+            }
+
+            report();
+        } finally {
+            channels.close().awaitUninterruptibly();
+            group.shutdownGracefully();
+        }
+    }
+
+    private WebSocketClientHandshaker newHandshaker() {
+        HttpHeaders headers = new DefaultHttpHeaders();
+
+        if (this.binary) {
+            headers.set(Protocol.FEATURES_HEADER, Protocol.Feature.join(EnumSet.of(Protocol.Feature.BINARY_FRAMING)));
+        }
+
+        return WebSocketClientHandshakerFactory.newHandshaker(this.uri, WebSocketVersion.V13, null, false, headers,
+                RelayServer.MAX_FRAME_LENGTH
+        );
+    }
+
+    private void report() {
+        System.out.println();
+        System.out.printf("Players: %d connected, %d failed%n", this.connected.sum(), this.failed.sum());
+        System.out.printf("Emotes: %d sent (%.1f/s), %d skipped while unwritable, %d received (%.1f/s)%n",
+                this.sent.sum(), this.sent.sum() / (double) this.duration, this.skipped.sum(),
+                this.received.sum(), this.received.sum() / (double) this.duration
+        );
+        System.out.printf("Latency: p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+                this.latency.percentile(50.0) / 1000.0, this.latency.percentile(90.0) / 1000.0,
+                this.latency.percentile(99.0) / 1000.0, this.latency.percentile(99.9) / 1000.0,
+                this.latency.max() / 1000.0
+        );
+    }
+}
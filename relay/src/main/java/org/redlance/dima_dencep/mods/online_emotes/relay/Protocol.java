@@ -0,0 +1,88 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.relay;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The client's wire constants, copied from the mod because this module is built without Minecraft.
+ * Keep in sync with {@code FrameType} and {@code RelayFeature}.
+ */
+public final class Protocol {
+    public static final String FEATURES_HEADER = "X-Online-Emotes-Features";
+    public static final String SESSION_HEADER = "X-Online-Emotes-Session";
+
+    public static final byte EMOTE = 0x01;
+    public static final byte EMOTE_BODY = 0x02;
+    public static final byte EMOTE_REFERENCE = 0x03;
+    public static final byte EMOTE_FETCH = 0x04;
+    public static final byte BUNDLE = 0x05;
+    public static final byte INTEREST = 0x06;
+    public static final byte CONTEXT = 0x07;
+
+    public static final int FLAG_UUID = 1;
+    public static final int FLAG_NAME = 1 << 1;
+    public static final int FLAG_ADDRESS = 1 << 2;
+    public static final int FLAG_CLEAR_UUID = 1 << 3;
+    public static final int FLAG_CLEAR_NAME = 1 << 4;
+    public static final int FLAG_CLEAR_ADDRESS = 1 << 5;
+
+    public static final int FLAG_RESET = 1;
+
+    public static final int HASH_LENGTH = 32;
+
+    private Protocol() {
+    }
+
+    public enum Feature {
+        BINARY_FRAMING("binary"),
+        EMOTE_CACHE("emote-cache"),
+        BUNDLE("bundle"),
+        INTEREST("interest"),
+        SESSION("session");
+
+        private final String id;
+
+        Feature(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return this.id;
+        }
+
+        public static Set<Feature> parse(String header) {
+            Set<Feature> features = EnumSet.noneOf(Feature.class);
+
+            if (header == null || header.isBlank()) {
+                return features;
+            }
+
+            for (String id : header.split(",")) {
+                for (Feature feature : values()) {
+                    if (feature.id.equalsIgnoreCase(id.trim())) {
+                        features.add(feature);
+                    }
+                }
+            }
+
+            return features;
+        }
+
+        public static String join(Set<Feature> features) {
+            return features.stream()
+                    .map(Feature::getId)
+                    .collect(Collectors.joining(","));
+        }
+    }
+}
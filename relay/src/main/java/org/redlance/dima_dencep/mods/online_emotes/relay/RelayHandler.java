@@ -0,0 +1,269 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.relay;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.websocketx.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Upgrades one connection and handles its frames, see {@link Protocol} for the binary layouts.
+ */
+public class RelayHandler extends SimpleChannelInboundHandler<Object> {
+    private static final Gson GSON = new Gson();
+
+    private final RelayServer relay;
+    private WebSocketServerHandshaker handshaker;
+    private Session session;
+
+    public RelayHandler(RelayServer relay) {
+        this.relay = relay;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof FullHttpRequest request) {
+            handshake(ctx, request);
+        } else if (msg instanceof WebSocketFrame frame && this.session != null) {
+            this.relay.framesIn.increment();
+            handleFrame(ctx, frame);
+        }
+    }
+
+    private void handshake(ChannelHandlerContext ctx, FullHttpRequest request) {
+        if (!request.decoderResult().isSuccess() || !"websocket".equalsIgnoreCase(request.headers().get(HttpHeaderNames.UPGRADE))) {
+            ctx.writeAndFlush(new DefaultFullHttpResponse(request.protocolVersion(), HttpResponseStatus.BAD_REQUEST))
+                    .addListener(ChannelFutureListener.CLOSE);
+            return;
+        }
+
+        WebSocketServerHandshakerFactory factory = new WebSocketServerHandshakerFactory(
+                "ws://" + request.headers().get(HttpHeaderNames.HOST) + request.uri(), null, true, RelayServer.MAX_FRAME_LENGTH
+        );
+
+        this.handshaker = factory.newHandshaker(request);
+        if (this.handshaker == null) {
+            WebSocketServerHandshakerFactory.sendUnsupportedVersionResponse(ctx.channel());
+            return;
+        }
+
+        Set<Protocol.Feature> features = Protocol.Feature.parse(request.headers().get(Protocol.FEATURES_HEADER));
+
+        HttpHeaders headers = new DefaultHttpHeaders();
+        if (!features.isEmpty()) {
+            headers.set(Protocol.FEATURES_HEADER, Protocol.Feature.join(features));
+        }
+
+        this.session = new Session(ctx.channel());
+        this.session.features = features;
+        ctx.channel().attr(Session.KEY).set(this.session);
+
+        if (features.contains(Protocol.Feature.SESSION)) {
+            headers.set(Protocol.SESSION_HEADER, this.relay.openSession(this.session, request.headers().get(Protocol.SESSION_HEADER)));
+        }
+
+        this.handshaker.handshake(ctx.channel(), request, headers, ctx.newPromise());
+        this.relay.connected(this.session);
+    }
+
+    private void handleFrame(ChannelHandlerContext ctx, WebSocketFrame frame) {
+        if (frame instanceof TextWebSocketFrame text) {
+            handleJson(text.text());
+
+        } else if (frame instanceof BinaryWebSocketFrame binary) {
+            if (!this.session.has(Protocol.Feature.BINARY_FRAMING)) {
+                this.relay.dropped.increment();
+                return;
+            }
+
+            handleBinary(ctx, binary.content());
+
+        } else if (frame instanceof PingWebSocketFrame) {
+            ctx.writeAndFlush(new PongWebSocketFrame(frame.content().retain()), ctx.voidPromise());
+
+        } else if (frame instanceof CloseWebSocketFrame) {
+            this.handshaker.close(ctx.channel(), (CloseWebSocketFrame) frame.retain());
+        }
+    }
+
+    private void handleJson(String json) {
+        Wrapper wrapper;
+        try {
+            wrapper = GSON.fromJson(json, Wrapper.class);
+        } catch (JsonParseException e) {
+            this.relay.dropped.increment();
+            return;
+        }
+
+        if (wrapper == null || wrapper.emotePacket == null) {
+            this.relay.dropped.increment();
+            return;
+        }
+
+        this.session.playerName = wrapper.playerName;
+        this.session.playerUUID = wrapper.playerUUID;
+        this.relay.join(this.session, wrapper.serverAddress != null ? wrapper.serverAddress : "");
+
+        ByteBuf packet = Unpooled.wrappedBuffer(wrapper.emotePacket);
+        try {
+            this.relay.broadcast(this.session, packet);
+        } finally {
+            packet.release();
+        }
+    }
+
+    private void handleBinary(ChannelHandlerContext ctx, ByteBuf buf) {
+        byte type = buf.readByte();
+
+        switch (type) {
+            case Protocol.EMOTE -> {
+                readIdentity(buf);
+                this.relay.broadcast(this.session, buf);
+            }
+            case Protocol.EMOTE_BODY -> this.relay.putBody(readHash(buf), ByteBufUtil.getBytes(buf));
+            case Protocol.EMOTE_REFERENCE -> {
+                readIdentity(buf);
+                byte[] hash = readHash(buf);
+                this.relay.broadcastReference(this.session, hash, buf.readInt());
+            }
+            case Protocol.EMOTE_FETCH -> {
+                byte[] hash = readHash(buf);
+                byte[] body = this.relay.getBody(hash);
+
+                if (body != null) {
+                    ByteBuf reply = ctx.alloc().buffer(1 + hash.length + body.length);
+                    reply.writeByte(Protocol.EMOTE_BODY);
+                    reply.writeBytes(hash);
+                    reply.writeBytes(body);
+
+                    ctx.writeAndFlush(new BinaryWebSocketFrame(reply), ctx.voidPromise());
+                    this.relay.framesOut.increment();
+                }
+            }
+            case Protocol.INTEREST -> readInterest(buf);
+            case Protocol.CONTEXT -> readContext(buf);
+            default -> this.relay.dropped.increment();
+        }
+    }
+
+    private void readIdentity(ByteBuf buf) {
+        int flags = buf.readUnsignedByte();
+
+        if ((flags & Protocol.FLAG_UUID) != 0) {
+            this.session.playerUUID = new UUID(buf.readLong(), buf.readLong());
+        }
+
+        if ((flags & Protocol.FLAG_NAME) != 0) {
+            this.session.playerName = readString(buf);
+        }
+
+        if ((flags & Protocol.FLAG_ADDRESS) != 0) {
+            this.relay.join(this.session, readString(buf));
+        } else if (!this.session.has(Protocol.Feature.SESSION)) {
+            // Session clients announce the server with CONTEXT, an empty header doesn't mean they left it
+            this.relay.join(this.session, "");
+        }
+    }
+
+    private void readContext(ByteBuf buf) {
+        int flags = buf.readUnsignedByte();
+
+        if ((flags & Protocol.FLAG_UUID) != 0) {
+            this.session.playerUUID = new UUID(buf.readLong(), buf.readLong());
+        } else if ((flags & Protocol.FLAG_CLEAR_UUID) != 0) {
+            this.session.playerUUID = null;
+        }
+
+        if ((flags & Protocol.FLAG_NAME) != 0) {
+            this.session.playerName = readString(buf);
+        } else if ((flags & Protocol.FLAG_CLEAR_NAME) != 0) {
+            this.session.playerName = null;
+        }
+
+        if ((flags & Protocol.FLAG_ADDRESS) != 0) {
+            this.relay.join(this.session, readString(buf));
+        } else if ((flags & Protocol.FLAG_CLEAR_ADDRESS) != 0) {
+            this.relay.join(this.session, "");
+        }
+
+        this.relay.saveContext(this.session);
+    }
+
+    private void readInterest(ByteBuf buf) {
+        Set<UUID> previous = this.session.interest;
+
+        Set<UUID> interest = ConcurrentHashMap.newKeySet();
+        if ((buf.readUnsignedByte() & Protocol.FLAG_RESET) == 0 && previous != null) {
+            interest.addAll(previous);
+        }
+
+        for (int i = buf.readUnsignedShort(); i > 0; i--) {
+            interest.add(new UUID(buf.readLong(), buf.readLong()));
+        }
+
+        for (int i = buf.readUnsignedShort(); i > 0; i--) {
+            interest.remove(new UUID(buf.readLong(), buf.readLong()));
+        }
+
+        this.session.interest = interest;
+
+        if (previous != null) { // Before the first announcement nothing was filtered
+            Set<UUID> added = new HashSet<>(interest);
+            added.removeAll(previous);
+
+            this.relay.replay(this.session, added);
+        }
+    }
+
+    private static String readString(ByteBuf buf) {
+        return buf.readCharSequence(buf.readUnsignedShort(), StandardCharsets.UTF_8).toString();
+    }
+
+    private static byte[] readHash(ByteBuf buf) {
+        byte[] hash = new byte[Protocol.HASH_LENGTH];
+        buf.readBytes(hash);
+        return hash;
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        System.err.println("Relay connection failed: " + cause);
+        ctx.close();
+    }
+
+    /**
+     * The JSON form of the client's {@code EmotePacketWrapper}.
+     */
+    public static class Wrapper {
+        public byte[] emotePacket;
+        public String playerName;
+        public UUID playerUUID;
+        public String serverAddress;
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.relay;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrameAggregator;
+import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketServerCompressionHandler;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A local stand-in for the production relay, for load tests with {@link LoadDriver}.
+ * Clients are grouped into rooms by the server address they report, every emote is fanned out to the rest of the room.
+ * Speaks the original JSON protocol as well as the binary framing, emote cache, bundle, interest and session extensions.
+ * <p>
+ * Usage: {@code ./gradlew :relay:run --args="8080"}
+ */
+public class RelayServer {
+    public static final int MAX_FRAME_LENGTH = 1048576;
+    private static final int MAX_BODIES = 4096;
+    private static final int MAX_SESSIONS = 16384;
+
+    private final Map<String, ChannelGroup> rooms = new ConcurrentHashMap<>();
+    private final ChannelGroup clients = new DefaultChannelGroup("clients", GlobalEventExecutor.INSTANCE);
+    private final Map<String, byte[]> bodies = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > MAX_BODIES;
+        }
+    });
+
+    private final Map<String, Session.Context> sessions = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Session.Context> eldest) {
+            return size() > MAX_SESSIONS;
+        }
+    });
+
+    public final LongAdder framesIn = new LongAdder();
+    public final LongAdder framesOut = new LongAdder();
+    public final LongAdder dropped = new LongAdder();
+    public final LongAdder filtered = new LongAdder();
+
+    public static void main(String[] args) throws InterruptedException {
+        new RelayServer().run(args.length > 0 ? Integer.parseInt(args[0]) : 8080);
+    }
+
+    public void run(int port) throws InterruptedException {
+        EventLoopGroup boss = new NioEventLoopGroup(1);
+        EventLoopGroup workers = new NioEventLoopGroup();
+
+        try {
+            ServerBootstrap bootstrap = new ServerBootstrap()
+                    .group(boss, workers)
+                    .channel(NioServerSocketChannel.class)
+                    .option(ChannelOption.SO_BACKLOG, 4096)
+                    .childOption(ChannelOption.TCP_NODELAY, true)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            ch.pipeline().addLast("http-codec", new HttpServerCodec());
+                            ch.pipeline().addLast("aggregator", new HttpObjectAggregator(65536));
+                            ch.pipeline().addLast("ws-compression", new WebSocketServerCompressionHandler());
+                            ch.pipeline().addLast("ws-aggregator", new WebSocketFrameAggregator(MAX_FRAME_LENGTH));
+                            ch.pipeline().addLast("relay", new RelayHandler(RelayServer.this));
+                        }
+                    });
+
+            Channel channel = bootstrap.bind(port).sync().channel();
+            System.out.printf("Relay listening on ws://localhost:%d%n", port);
+
+            workers.scheduleAtFixedRate(this::printStats, 10L, 10L, TimeUnit.SECONDS);
+
+            channel.closeFuture().sync();
+        } finally {
+            boss.shutdownGracefully();
+            workers.shutdownGracefully();
+        }
+    }
+
+    public void connected(Session session) {
+        this.clients.add(session.channel);
+    }
+
+    /**
+     * Resumes the session with the requested id if it is still known, or starts a new one.
+     *
+     * @return the id to send back to the client
+     */
+    public String openSession(Session session, String requestedId) {
+        Session.Context context = requestedId != null ? this.sessions.get(requestedId) : null;
+
+        if (context == null) {
+            session.sessionId = UUID.randomUUID().toString();
+            saveContext(session);
+            return session.sessionId;
+        }
+
+        session.sessionId = requestedId;
+        session.playerUUID = context.playerUUID;
+        session.playerName = context.playerName;
+        join(session, context.room);
+        return requestedId;
+    }
+
+    public void saveContext(Session session) {
+        if (session.sessionId != null) {
+            this.sessions.put(session.sessionId, session.snapshot());
+        }
+    }
+
+    public void join(Session session, String room) {
+        if (Objects.equals(session.room, room)) {
+            return;
+        }
+
+        if (session.room != null) {
+            ChannelGroup previous = this.rooms.get(session.room);
+
+            if (previous != null) {
+                previous.remove(session.channel);
+            }
+        }
+
+        session.room = room;
+        this.rooms.computeIfAbsent(room, (name) -> new DefaultChannelGroup(name, GlobalEventExecutor.INSTANCE))
+                .add(session.channel);
+    }
+
+    /**
+     * Sends the raw Emotecraft packet to everyone else in the room, prefixed with its type for binary framing clients.
+     * The packet is only borrowed.
+     */
+    public void broadcast(Session sender, ByteBuf packet) {
+        ChannelGroup room = this.rooms.get(sender.room);
+        if (room == null) {
+            return;
+        }
+
+        ByteBuf typed = sender.channel.alloc().buffer(1 + packet.readableBytes());
+        typed.writeByte(Protocol.EMOTE);
+        typed.writeBytes(packet, packet.readerIndex(), packet.readableBytes());
+        sender.last = new Session.Replay(ByteBufUtil.getBytes(typed));
+
+        try {
+            for (Channel channel : room) {
+                Session recipient = channel.attr(Session.KEY).get();
+
+                if (channel == sender.channel || recipient == null) {
+                    continue;
+                }
+
+                if (!recipient.isInterested(sender)) {
+                    this.filtered.increment();
+                    continue;
+                }
+
+                if (recipient.has(Protocol.Feature.BINARY_FRAMING)) {
+                    recipient.send(typed.retainedDuplicate());
+                } else {
+                    channel.writeAndFlush(new BinaryWebSocketFrame(packet.retainedDuplicate()), channel.voidPromise());
+                }
+                this.framesOut.increment();
+            }
+        } finally {
+            typed.release();
+        }
+    }
+
+    /**
+     * References can only be played by clients with the emote cache, everyone else misses them.
+     */
+    public void broadcastReference(Session sender, byte[] hash, int tick) {
+        ChannelGroup room = this.rooms.get(sender.room);
+        if (room == null) {
+            return;
+        }
+
+        UUID player = sender.playerUUID != null ? sender.playerUUID : new UUID(0L, 0L);
+
+        ByteBuf frame = sender.channel.alloc().buffer(1 + hash.length + 16 + 4);
+        frame.writeByte(Protocol.EMOTE_REFERENCE);
+        frame.writeBytes(hash);
+        frame.writeLong(player.getMostSignificantBits());
+        frame.writeLong(player.getLeastSignificantBits());
+        frame.writeInt(tick);
+        sender.last = new Session.Replay(ByteBufUtil.getBytes(frame));
+
+        try {
+            for (Channel channel : room) {
+                Session recipient = channel.attr(Session.KEY).get();
+
+                if (channel == sender.channel || recipient == null) {
+                    continue;
+                }
+
+                if (!recipient.isInterested(sender)) {
+                    this.filtered.increment();
+                    continue;
+                }
+
+                if (!recipient.has(Protocol.Feature.EMOTE_CACHE)) {
+                    this.dropped.increment();
+                    continue;
+                }
+
+                recipient.send(frame.retainedDuplicate());
+                this.framesOut.increment();
+            }
+        } finally {
+            frame.release();
+        }
+    }
+
+    /**
+     * Sends the last emote of every player in {@code added} to {@code recipient}, which filtered it while they were out of range.
+     * References are advanced by the time they waited, raw Emotecraft packets are replayed as they were.
+     */
+    public void replay(Session recipient, Set<UUID> added) {
+        ChannelGroup room = this.rooms.get(recipient.room);
+        if (room == null || added.isEmpty()) {
+            return;
+        }
+
+        for (Channel channel : room) {
+            Session sender = channel.attr(Session.KEY).get();
+
+            if (channel == recipient.channel || sender == null || sender.playerUUID == null
+                    || !added.contains(sender.playerUUID)) {
+                continue;
+            }
+
+            Session.Replay replay = sender.last;
+            if (replay == null) {
+                continue;
+            }
+
+            ByteBuf frame = Unpooled.wrappedBuffer(replay.frame.clone());
+
+            if (frame.getByte(0) == Protocol.EMOTE_REFERENCE) {
+                if (!recipient.has(Protocol.Feature.EMOTE_CACHE)) {
+                    frame.release();
+                    continue;
+                }
+
+                int tickIndex = frame.writerIndex() - Integer.BYTES;
+                long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - replay.time) / 50L;
+                frame.setInt(tickIndex, frame.getInt(tickIndex) + (int) waited);
+            }
+
+            if (recipient.has(Protocol.Feature.BINARY_FRAMING)) {
+                recipient.send(frame);
+            } else {
+                recipient.channel.writeAndFlush(new BinaryWebSocketFrame(frame.skipBytes(1)), recipient.channel.voidPromise());
+            }
+            this.framesOut.increment();
+        }
+    }
+
+    public void putBody(byte[] hash, byte[] body) {
+        this.bodies.put(ByteBufUtil.hexDump(hash), body);
+    }
+
+    public byte[] getBody(byte[] hash) {
+        return this.bodies.get(ByteBufUtil.hexDump(hash));
+    }
+
+    private void printStats() {
+        System.out.printf("Clients: %d, rooms: %d, frames in: %d, out: %d, dropped: %d, out of interest: %d%n",
+                this.clients.size(), this.rooms.size(), this.framesIn.sum(), this.framesOut.sum(), this.dropped.sum(),
+                this.filtered.sum()
+        );
+    }
+}
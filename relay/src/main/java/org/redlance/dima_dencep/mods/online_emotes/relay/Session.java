@@ -0,0 +1,102 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.relay;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.util.AttributeKey;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * One connected client. Identity fields are taken from the last packet it sent,
+ * or from its {@link Protocol#CONTEXT} frames if it speaks the session protocol.
+ */
+public class Session {
+    public static final AttributeKey<Session> KEY = AttributeKey.valueOf("online_emotes_session");
+
+    public final Channel channel;
+    public Set<Protocol.Feature> features = EnumSet.noneOf(Protocol.Feature.class);
+    public String sessionId;
+
+    public volatile UUID playerUUID;
+    public volatile String playerName;
+    public volatile String room;
+    /**
+     * Players this client can see, {@code null} until it announces them.
+     */
+    public volatile Set<UUID> interest;
+    /**
+     * The last emote or reference this client sent, replayed to clients that start seeing it.
+     */
+    public volatile Replay last;
+
+    private final Bundler bundler;
+
+    public Session(Channel channel) {
+        this.channel = channel;
+        this.bundler = new Bundler(channel);
+    }
+
+    /**
+     * Writes a typed frame, or hands it to the {@link Bundler} if the client accepts bundles.
+     */
+    public void send(ByteBuf content) {
+        if (has(Protocol.Feature.BUNDLE)) {
+            this.bundler.add(content);
+        } else {
+            this.channel.writeAndFlush(new BinaryWebSocketFrame(content), this.channel.voidPromise());
+        }
+    }
+
+    public boolean has(Protocol.Feature feature) {
+        return this.features.contains(feature);
+    }
+
+    public Context snapshot() {
+        return new Context(this.playerUUID, this.playerName, this.room);
+    }
+
+    public boolean isInterested(Session sender) {
+        Set<UUID> interest = this.interest;
+        return interest == null || sender.playerUUID == null || interest.contains(sender.playerUUID);
+    }
+
+    public static class Replay {
+        /**
+         * A typed {@link Protocol#EMOTE} or {@link Protocol#EMOTE_REFERENCE} frame.
+         */
+        public final byte[] frame;
+        public final long time = System.nanoTime();
+
+        public Replay(byte[] frame) {
+            this.frame = frame;
+        }
+    }
+
+    /**
+     * The identity a session had when its connection dropped, kept so a reconnect can resume it.
+     */
+    public static class Context {
+        public final UUID playerUUID;
+        public final String playerName;
+        public final String room;
+
+        public Context(UUID playerUUID, String playerName, String room) {
+            this.playerUUID = playerUUID;
+            this.playerName = playerName;
+            this.room = room;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2023 - 2024 dima_dencep.
+ *
+ * Licensed under the Open Software License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *     https://spdx.org/licenses/OSL-3.0.txt
+ */
+
+package org.redlance.dima_dencep.mods.online_emotes.relay;
+
+import com.google.gson.Gson;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketClientProtocolHandler;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One simulated player of {@link LoadDriver}. Sends an emote every {@code 1 / rate} seconds once the handshake completes,
+ * the payload starts with the send time, so every receiver can record the latency.
+ */
+public class VirtualPlayer extends SimpleChannelInboundHandler<WebSocketFrame> {
+    private static final Gson GSON = new Gson();
+
+    private final LoadDriver driver;
+    private final UUID playerUUID;
+    private final String room;
+    private final byte[] header;
+    private ScheduledFuture<?> task;
+
+    public VirtualPlayer(LoadDriver driver, int index) {
+        this.driver = driver;
+        this.playerUUID = new UUID(0L, index);
+        this.room = "loadtest-" + index / driver.roomSize;
+        this.header = encodeHeader();
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt == WebSocketClientProtocolHandler.ClientHandshakeStateEvent.HANDSHAKE_COMPLETE) {
+            this.driver.connected.increment();
+
+            long period = (long) (TimeUnit.SECONDS.toNanos(1L) / this.driver.rate);
+            long initialDelay = ThreadLocalRandom.current().nextLong(period);
+
+            this.task = ctx.executor().scheduleAtFixedRate(() -> send(ctx), initialDelay, period, TimeUnit.NANOSECONDS);
+        }
+
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (this.task != null) {
+            this.task.cancel(false);
+        }
+
+        super.channelInactive(ctx);
+    }
+
+    private void send(ChannelHandlerContext ctx) {
+        if (!ctx.channel().isWritable()) {
+            this.driver.skipped.increment();
+            return;
+        }
+
+        ByteBuf payload = ctx.alloc().buffer(this.driver.size);
+        payload.writeLong(System.nanoTime());
+        payload.writeZero(Math.max(0, this.driver.size - payload.readableBytes()));
+
+        if (this.driver.binary) {
+            ByteBuf frame = ctx.alloc().buffer(1 + this.header.length + payload.readableBytes());
+            frame.writeByte(Protocol.EMOTE);
+            frame.writeBytes(this.header);
+            frame.writeBytes(payload);
+
+            ctx.writeAndFlush(new BinaryWebSocketFrame(frame), ctx.voidPromise());
+        } else {
+            RelayHandler.Wrapper wrapper = new RelayHandler.Wrapper();
+            wrapper.emotePacket = ByteBufUtil.getBytes(payload);
+            wrapper.playerName = "Player" + this.playerUUID.getLeastSignificantBits();
+            wrapper.playerUUID = this.playerUUID;
+            wrapper.serverAddress = this.room;
+
+            ctx.writeAndFlush(new TextWebSocketFrame(GSON.toJson(wrapper)), ctx.voidPromise());
+        }
+
+        payload.release();
+        this.driver.sent.increment();
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, WebSocketFrame msg) {
+        if (!(msg instanceof BinaryWebSocketFrame)) {
+            return;
+        }
+
+        ByteBuf buf = msg.content();
+
+        if (this.driver.binary && buf.readByte() != Protocol.EMOTE) {
+            return;
+        }
+
+        if (buf.readableBytes() >= Long.BYTES) {
+            this.driver.latency.record(System.nanoTime() - buf.readLong());
+            this.driver.received.increment();
+        }
+    }
+
+    private byte[] encodeHeader() {
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            buf.writeByte(Protocol.FLAG_UUID | Protocol.FLAG_ADDRESS);
+            buf.writeLong(this.playerUUID.getMostSignificantBits());
+            buf.writeLong(this.playerUUID.getLeastSignificantBits());
+            buf.writeShort(ByteBufUtil.utf8Bytes(this.room));
+            ByteBufUtil.writeUtf8(buf, this.room);
+
+            return ByteBufUtil.getBytes(buf);
+        } finally {
+            buf.release();
+        }
+    }
+}